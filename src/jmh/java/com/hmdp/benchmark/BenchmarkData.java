@@ -0,0 +1,47 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试数据, 字段取值与 db/hmdp.sql 中的商铺和用户数据相当
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Shop shop() {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        shop.setTypeId(1L);
+        shop.setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg,https://qcloud.dpfile.com/pc/IOf6VX3qaBgFXFVgp75w-KKJmWZjFc8GXDU8g9bQC6YGCpAmG00QbfT4vCCBj7njuzFvxlbkWx5uwqY2qcjixFEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vmIU_8ZGOT1OjpJmLxG6urQ.jpg");
+        shop.setArea("大关");
+        shop.setAddress("金华路锦昌文华苑29号");
+        shop.setX(120.149192);
+        shop.setY(30.316078);
+        shop.setAvgPrice(80L);
+        shop.setSold(4215);
+        shop.setComments(3035);
+        shop.setScore(37);
+        shop.setOpenHours("10:00-22:00");
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        shop.setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+        return shop;
+    }
+
+    /**
+     * 登录用户在Redis中的hash, 与 UserServiceImpl 写入的字段相同, 值均为字符串
+     */
+    static Map<Object, Object> userHash() {
+        Map<Object, Object> hash = new HashMap<>();
+        hash.put("id", "1010");
+        hash.put("nickName", "user_slxaxy2au9f3tanffaxr");
+        hash.put("icon", "/imgs/icons/kkjtbcr.jpg");
+        return hash;
+    }
+}
@@ -0,0 +1,67 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.BinaryCacheSerializer;
+import com.hmdp.utils.CacheSerializer;
+import com.hmdp.utils.CacheValue;
+import com.hmdp.utils.JsonCacheSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值编解码: hutool JSON(RedisData 包装, 逻辑过期需解析两次) 与 Smile 二进制格式
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    @Param({"json", "binary"})
+    private String format;
+
+    private CacheSerializer serializer;
+    private Shop shop;
+    private long expireTime;
+    // 普通缓存
+    private byte[] plain;
+    // 逻辑过期缓存
+    private byte[] logical;
+
+    @Setup
+    public void setup() {
+        serializer = "binary".equals(format) ? new BinaryCacheSerializer() : new JsonCacheSerializer();
+        shop = BenchmarkData.shop();
+        expireTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+        plain = serializer.serialize(shop, -1);
+        logical = serializer.serialize(shop, expireTime);
+    }
+
+    @Benchmark
+    public CacheValue<Shop> decodePlain() {
+        return serializer.deserialize(plain, Shop.class);
+    }
+
+    @Benchmark
+    public CacheValue<Shop> decodeLogical() {
+        return serializer.deserialize(logical, Shop.class);
+    }
+
+    @Benchmark
+    public byte[] encodeLogical() {
+        return serializer.serialize(shop, expireTime);
+    }
+}
@@ -0,0 +1,101 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.IdProperties;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SnowflakeIdWorker;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * id生成的本地开销与分配
+ * Redis由内存计数器代替, 号段模式只在号段切换时访问它; 雪花算法不访问Redis, 直接设置租约状态
+ * legacyDate 为号段模式之前每次调用都创建 DateTimeFormatter 并格式化日期的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdWorkerBenchmark {
+
+    private RedisIdWorker segmentWorker;
+    private SnowflakeIdWorker snowflakeWorker;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        // 1.号段模式, INCRBY 由内存计数器代替; stubOnly 不记录调用, 长时间运行不会积累内存
+        AtomicLong counter = new AtomicLong();
+        StringRedisTemplate template = Mockito.mock(StringRedisTemplate.class, Mockito.withSettings().stubOnly());
+        ValueOperations<String, String> ops = Mockito.mock(ValueOperations.class, Mockito.withSettings().stubOnly());
+        Mockito.when(template.opsForValue()).thenReturn(ops);
+        Mockito.when(ops.increment(Mockito.anyString(), Mockito.anyLong()))
+                .thenAnswer(invocation -> counter.addAndGet(invocation.getArgument(1)));
+        segmentWorker = new RedisIdWorker();
+        ReflectionTestUtils.setField(segmentWorker, "stringRedisTemplate", template);
+        ReflectionTestUtils.setField(segmentWorker, "idProperties", new IdProperties());
+
+        // 2.雪花算法, 租约脚本由mock代替, 租到后不再过期; 压测速度超过每毫秒4096个时会借用后续毫秒, 不限制偏移
+        StringRedisTemplate leaseTemplate = Mockito.mock(StringRedisTemplate.class, Mockito.withSettings().stubOnly());
+        Mockito.when(leaseTemplate.execute(Mockito.<RedisScript<Long>>any(), Mockito.anyList(), Mockito.<Object>any()))
+                .thenReturn(0L);
+        snowflakeWorker = new SnowflakeIdWorker();
+        ReflectionTestUtils.setField(snowflakeWorker, "stringRedisTemplate", leaseTemplate);
+        ReflectionTestUtils.invokeMethod(snowflakeWorker, "acquire");
+        ReflectionTestUtils.setField(snowflakeWorker, "leaseDeadline", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(snowflakeWorker, "maxBackwardMillis", Long.MAX_VALUE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        segmentWorker.destroy();
+    }
+
+    @Benchmark
+    public long segment() {
+        return segmentWorker.nextId("order");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long segmentContended() {
+        return segmentWorker.nextId("order");
+    }
+
+    @Benchmark
+    public long snowflake() {
+        return snowflakeWorker.nextId("order");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long snowflakeContended() {
+        return snowflakeWorker.nextId("order");
+    }
+
+    @Benchmark
+    public String legacyDate() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON字符串解析为 Shop: JSONUtil.toBean 与 Jackson
+ * 两者的时间格式不同(hutool为毫秒时间戳), 各自解析自己序列化的结果
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDecodeBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private String hutoolJson;
+    private String jacksonJson;
+
+    @Setup
+    public void setup() throws IOException {
+        Shop shop = BenchmarkData.shop();
+        hutoolJson = JSONUtil.toJsonStr(shop);
+        jacksonJson = mapper.writeValueAsString(shop);
+    }
+
+    @Benchmark
+    public Shop hutoolToBean() {
+        return JSONUtil.toBean(hutoolJson, Shop.class);
+    }
+
+    @Benchmark
+    public Shop jacksonReadValue() throws IOException {
+        return mapper.readValue(jacksonJson, Shop.class);
+    }
+}
@@ -0,0 +1,50 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.hmdp.dto.UserDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录用户hash转为 UserDTO: RefreshTokenInterceptor 中的反射填充与直接赋值
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDtoBenchmark {
+
+    private Map<Object, Object> hash;
+
+    @Setup
+    public void setup() {
+        hash = BenchmarkData.userHash();
+    }
+
+    @Benchmark
+    public UserDTO fillBeanWithMap() {
+        return BeanUtil.fillBeanWithMap(hash, new UserDTO(), false);
+    }
+
+    @Benchmark
+    public UserDTO direct() {
+        UserDTO user = new UserDTO();
+        user.setId(Long.valueOf(hash.get("id").toString()));
+        user.setNickName((String) hash.get("nickName"));
+        user.setIcon((String) hash.get("icon"));
+        return user;
+    }
+}
@@ -0,0 +1,55 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流, 令牌桶算法, 可在同一方法上声明多个
+ * 限流key = rate: + name + : + key表达式的值 [+ : + 用户id]
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 限流名称, 默认为 类名.方法名
+     */
+    String name() default "";
+
+    /**
+     * 限流维度, SpEL表达式, 可引用方法参数, 如 #voucherId; 为空时整个方法共用一个桶
+     */
+    String key() default "";
+
+    /**
+     * 是否按用户限流, 未登录时按客户端IP
+     */
+    boolean perUser() default false;
+
+    /**
+     * 只在本节点限流, 不访问Redis, 限额为每个节点的额度
+     * 适用于所有请求共用一个key的全局限流, 避免所有节点集中访问同一个Redis key
+     */
+    boolean local() default false;
+
+    /**
+     * 每秒生成的令牌数
+     */
+    double permitsPerSecond();
+
+    /**
+     * 桶容量, 即允许的突发请求数
+     */
+    int capacity();
+
+    /**
+     * 被限流时的提示信息
+     */
+    String message() default "请求过于频繁, 请稍后再试";
+}
@@ -0,0 +1,175 @@
+package com.hmdp.aspect;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.annotation.RateLimit;
+import com.hmdp.annotation.RateLimits;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流切面
+ * 1. 先用本地令牌桶过滤所有限流规则: 单个节点的请求就已超过限额时直接拒绝, 不访问Redis;
+ *    local 规则只做这一步, 限额为每个节点的额度
+ * 2. 本地都通过后, 再用Redis令牌桶判断其余规则的全局限额, 每条规则一次Lua调用
+ * 被某条规则拒绝时归还已取得的本地令牌, 不会因为其他规则的拒绝消耗用户的额度
+ * Redis不可用时放行, 限流不应成为单点故障
+ */
+@Slf4j
+@Aspect
+@Component
+public class RateLimitAspect {
+
+    private static final String KEY_PREFIX = "rate:";
+
+    private static final DefaultRedisScript<Long> RATE_LIMIT_SCRIPT;
+    static {
+        RATE_LIMIT_SCRIPT = new DefaultRedisScript<>();
+        RATE_LIMIT_SCRIPT.setLocation(new ClassPathResource("rate_limit.lua"));
+        RATE_LIMIT_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+    // 本地令牌桶, 一段时间不访问后淘汰
+    private final Cache<String, LocalTokenBucket> localBuckets = Caffeine.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(1, TimeUnit.MINUTES)
+            .build();
+
+    @Around("@annotation(com.hmdp.annotation.RateLimit) || @annotation(com.hmdp.annotation.RateLimits)")
+    public Object around(ProceedingJoinPoint pjp) throws Throwable {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Set<RateLimit> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(method, RateLimit.class, RateLimits.class);
+        List<RateLimit> remote = new ArrayList<>(limits.size());
+        List<String> remoteKeys = new ArrayList<>(limits.size());
+        List<LocalTokenBucket> acquired = new ArrayList<>(limits.size());
+        // 1.本地预过滤, 所有规则都先在本地判断
+        for (RateLimit limit : limits) {
+            String key = buildKey(limit, method, pjp);
+            LocalTokenBucket local = localBuckets.get(key, k -> new LocalTokenBucket(limit.permitsPerSecond(), limit.capacity()));
+            if (!local.tryAcquire()) {
+                acquired.forEach(LocalTokenBucket::refund);
+                return Result.fail(limit.message());
+            }
+            acquired.add(local);
+            if (!limit.local()) {
+                remote.add(limit);
+                remoteKeys.add(key);
+            }
+        }
+        // 2.Redis全局限流
+        for (int i = 0; i < remote.size(); i++) {
+            if (!tryAcquire(remoteKeys.get(i), remote.get(i))) {
+                acquired.forEach(LocalTokenBucket::refund);
+                return Result.fail(remote.get(i).message());
+            }
+        }
+        return pjp.proceed();
+    }
+
+    private boolean tryAcquire(String key, RateLimit limit) {
+        try {
+            Long r = stringRedisTemplate.execute(RATE_LIMIT_SCRIPT, Collections.singletonList(key),
+                    String.valueOf(limit.permitsPerSecond()), String.valueOf(limit.capacity()),
+                    String.valueOf(System.currentTimeMillis()));
+            return r == null || r == 1;
+        } catch (Exception e) {
+            log.error("限流判断失败, 放行, key:{}", key, e);
+            return true;
+        }
+    }
+
+    // rate:名称[:key表达式的值][:用户id]
+    private String buildKey(RateLimit limit, Method method, ProceedingJoinPoint pjp) {
+        StringBuilder key = new StringBuilder(KEY_PREFIX);
+        key.append(limit.name().isEmpty()
+                ? method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                : limit.name());
+        if (!limit.key().isEmpty()) {
+            Expression expression = expressions.computeIfAbsent(limit.key(), parser::parseExpression);
+            MethodBasedEvaluationContext context =
+                    new MethodBasedEvaluationContext(null, method, pjp.getArgs(), nameDiscoverer);
+            key.append(':').append(expression.getValue(context));
+        }
+        if (limit.perUser()) {
+            key.append(':').append(currentUser());
+        }
+        return key.toString();
+    }
+
+    // 当前用户id, 未登录时使用客户端IP
+    private String currentUser() {
+        UserDTO user = UserHolder.getUser();
+        if (user != null) return user.getId().toString();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) attributes).getRequest().getRemoteAddr();
+        }
+        return "anonymous";
+    }
+
+    /**
+     * 本地令牌桶, 与Redis中的桶参数相同
+     */
+    static class LocalTokenBucket {
+        private final double permitsPerMillis;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        LocalTokenBucket(double permitsPerSecond, int capacity) {
+            this.permitsPerMillis = permitsPerSecond / 1000;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerMillis);
+            lastRefill = now;
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+
+        // 归还一个令牌, 其他规则拒绝了本次请求
+        synchronized void refund() {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+    }
+}
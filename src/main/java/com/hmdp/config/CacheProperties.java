@@ -0,0 +1,200 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 缓存相关配置, 对应 application.yml 中的 hmdp.cache
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.cache")
+public class CacheProperties {
+
+    /**
+     * 缓存值序列化方式: json(兼容历史数据) 或 binary(紧凑二进制, 同时可读取json)
+     */
+    private String serializer = "json";
+
+    /**
+     * 本地一级缓存(L1)
+     */
+    private Local local = new Local();
+
+    /**
+     * 布隆过滤器, 拦截不存在的id
+     */
+    private Bloom bloom = new Bloom();
+
+    /**
+     * 逻辑过期缓存的概率提前重建(XFetch)
+     */
+    private EarlyRefresh earlyRefresh = new EarlyRefresh();
+
+    /**
+     * 缓存预热
+     */
+    private Warmup warmup = new Warmup();
+
+    /**
+     * 热点key探测与自动本地化
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 缓存失效管道
+     */
+    private Invalidation invalidation = new Invalidation();
+
+    /**
+     * 缓存异步重建线程池
+     */
+    private Rebuild rebuild = new Rebuild();
+
+    @Data
+    public static class Local {
+        /**
+         * 是否开启本地缓存, 默认关闭
+         */
+        private boolean enabled = false;
+        /**
+         * 最大条目数, 超出后按 LRU/LFU 淘汰
+         */
+        private long maximumSize = 10000;
+        /**
+         * 写入后的存活时间, 决定跨节点失效消息丢失时的最大不一致窗口
+         */
+        private Duration ttl = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 是否开启布隆过滤器, 默认关闭
+         */
+        private boolean enabled = false;
+        /**
+         * 预计元素数量, 实际数量超出后误判率会升高
+         */
+        private long expectedInsertions = 100000;
+        /**
+         * 期望误判率
+         */
+        private double fpp = 0.01;
+    }
+
+    @Data
+    public static class EarlyRefresh {
+        /**
+         * 是否开启提前重建, 默认关闭
+         */
+        private boolean enabled = false;
+        /**
+         * 提前程度, 大于1更激进, 小于1更保守
+         */
+        private double beta = 1.0;
+    }
+
+    @Data
+    public static class Warmup {
+        /**
+         * 是否开启预热, 默认关闭
+         */
+        private boolean enabled = false;
+        /**
+         * 每页加载的条数
+         */
+        private int pageSize = 500;
+        /**
+         * 同时查询数据库的最大线程数
+         */
+        private int concurrency = 4;
+        /**
+         * 定时刷新的热门商铺数量
+         */
+        private int hotTopN = 100;
+        /**
+         * 热门商铺刷新间隔
+         */
+        private Duration hotInterval = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * 是否开启热点探测, 默认关闭
+         */
+        private boolean enabled = false;
+        /**
+         * 滑动窗口长度
+         */
+        private Duration window = Duration.ofSeconds(10);
+        /**
+         * 窗口切片数, 越多滑动越平滑
+         */
+        private int slices = 10;
+        /**
+         * count-min sketch 每行计数器数量
+         */
+        private int width = 4096;
+        /**
+         * count-min sketch 行数
+         */
+        private int depth = 4;
+        /**
+         * 单节点窗口内访问次数达到该值即视为热点
+         */
+        private long threshold = 1000;
+        /**
+         * 保留的热点数量
+         */
+        private int topK = 50;
+        /**
+         * 热点key本地副本的存活时间
+         */
+        private Duration localTtl = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Invalidation {
+        /**
+         * 一次批量删除的最大key数量
+         */
+        private int batchSize = 100;
+        /**
+         * 延迟双删的间隔, 应大于一次读库并回写缓存的耗时
+         */
+        private Duration secondDeleteDelay = Duration.ofSeconds(1);
+        /**
+         * 失败重试间隔
+         */
+        private Duration retryInterval = Duration.ofSeconds(5);
+        /**
+         * 删除失败的key的本地持久化文件
+         */
+        private String retryFile = "data/cache-invalidation-retry.log";
+        /**
+         * 已提交但还没有完成两次删除的key的日志文件, 重启后重新删除
+         */
+        private String journalFile = "data/cache-invalidation-journal.log";
+    }
+
+    @Data
+    public static class Rebuild {
+        /**
+         * 重建线程数
+         */
+        private int threads = 10;
+        /**
+         * 等待队列容量, 队列满时拒绝新任务, 调用方继续返回旧数据
+         */
+        private int queueCapacity = 1000;
+        /**
+         * 关闭时等待已提交任务完成的最长时间
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(5);
+    }
+}
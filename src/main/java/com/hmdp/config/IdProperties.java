@@ -0,0 +1,59 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 全局id生成配置, 对应 application.yml 中的 hmdp.id
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.id")
+public class IdProperties {
+
+    /**
+     * id生成方式: redis 使用Redis计数器, snowflake 使用租约worker id在本地生成
+     */
+    private String type = "redis";
+
+    /**
+     * 号段模式, 仅 redis 方式
+     */
+    private Segment segment = new Segment();
+
+    /**
+     * 雪花算法, 仅 snowflake 方式
+     */
+    private Snowflake snowflake = new Snowflake();
+
+    @Data
+    public static class Segment {
+        /**
+         * 是否开启号段模式, 关闭时每个id一次INCR
+         */
+        private boolean enabled = true;
+        /**
+         * 每次从Redis申请的号段长度, 不小于1000
+         */
+        private int step = 1000;
+        /**
+         * 当前号段使用到该比例时后台预取下一个号段
+         */
+        private double prefetchRatio = 0.8;
+    }
+
+    @Data
+    public static class Snowflake {
+        /**
+         * worker id租约时长, 每1/3租期续期一次; 超过租期未续期成功时停止生成id
+         */
+        private Duration leaseTtl = Duration.ofSeconds(60);
+        /**
+         * 可容忍的时钟回拨, 范围内继续使用上一个时间戳的序列号, 超过时拒绝生成
+         */
+        private Duration maxBackward = Duration.ofSeconds(5);
+    }
+}
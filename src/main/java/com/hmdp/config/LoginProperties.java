@@ -0,0 +1,62 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 登录态相关配置, 对应 application.yml 中的 hmdp.login
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.login")
+public class LoginProperties {
+
+    /**
+     * token -> 用户 的本地缓存
+     */
+    private TokenCache tokenCache = new TokenCache();
+
+    /**
+     * 登录有效期的滑动刷新
+     */
+    private Refresh refresh = new Refresh();
+
+    @Data
+    public static class TokenCache {
+        /**
+         * 是否开启, 关闭时每个请求都从Redis读取用户
+         */
+        private boolean enabled = true;
+        /**
+         * 最多缓存的token数
+         */
+        private long maximumSize = 100000;
+        /**
+         * 本地缓存时间, 登出通过发布订阅立即失效, 消息丢失时最多延迟该时间
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Refresh {
+        /**
+         * 是否开启节流, 关闭时每个请求都刷新一次有效期
+         */
+        private boolean enabled = true;
+        /**
+         * 距上次刷新超过 有效期(LOGIN_USER_TTL) * fraction 时才再次刷新
+         */
+        private double fraction = 0.01;
+        /**
+         * 批量发送刷新的间隔, 期间所有请求线程的刷新合并为一次pipeline
+         */
+        private Duration flushInterval = Duration.ofMillis(300);
+        /**
+         * 最多记录的token数, 超出时淘汰的token下次请求会重新刷新
+         */
+        private long maximumSize = 100000;
+    }
+}
@@ -1,5 +1,6 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.AdminInterceptor;
 import com.hmdp.utils.LoginInterceptor;
 import com.hmdp.utils.RefreshTokenInterceptor;
 import org.springframework.stereotype.Component;
@@ -15,6 +16,8 @@ public class MVCConfig implements WebMvcConfigurer {
     private LoginInterceptor loginInterceptor;  // 让Spring注入
     @Resource
     private RefreshTokenInterceptor refreshTokenInterceptor;
+    @Resource
+    private AdminInterceptor adminInterceptor;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
@@ -30,6 +33,8 @@ public class MVCConfig implements WebMvcConfigurer {
                         "/upload/**",
                         "/voucher/**"
                 ).order(2);
+        // 管理接口拦截器, 登录后再校验管理员
+        registry.addInterceptor(adminInterceptor).addPathPatterns("/admin/**").order(3);
         // 刷新token拦截器
         registry.addInterceptor(refreshTokenInterceptor).addPathPatterns("/**").order(1);
     }
@@ -0,0 +1,59 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 秒杀相关配置, 对应 application.yml 中的 hmdp.seckill
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.seckill")
+public class SeckillProperties {
+
+    /**
+     * 订单消息队列消费
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * 分段库存对账间隔(毫秒)
+     */
+    private long reconcileInterval = 60000;
+
+    @Data
+    public static class Stream {
+        /**
+         * 消费者组名称
+         */
+        private String group = "g1";
+        /**
+         * 消费者名称, 每个节点必须唯一, 未配置时使用 主机名-进程号
+         * 节点改名或下线后, 它未确认的消息由其他节点在空闲超过 claim-min-idle 后接管
+         */
+        private String consumer;
+        /**
+         * 一批最多处理的订单数
+         */
+        private int batchSize = 100;
+        /**
+         * 攒批的最长等待时间, 未攒满也会处理
+         */
+        private Duration batchTimeout = Duration.ofMillis(200);
+        /**
+         * 其他消费者的消息超过该时间未确认时接管
+         */
+        private Duration claimMinIdle = Duration.ofSeconds(60);
+        /**
+         * 检查并接管空闲消息的间隔, 同时重试本节点未确认的消息
+         */
+        private Duration claimInterval = Duration.ofSeconds(30);
+        /**
+         * 单条消息投递达到该次数仍写库失败时, 转入死信队列并归还库存
+         */
+        private int maxDeliveries = 5;
+    }
+}
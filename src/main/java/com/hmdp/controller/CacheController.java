@@ -0,0 +1,67 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.CacheRebuildExecutor;
+import com.hmdp.utils.ShopCacheWarmer;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ * 缓存管理接口, 挂在 /admin 下, 只有管理员可以访问
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheController {
+
+    @Resource
+    private ShopCacheWarmer shopCacheWarmer;
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private CacheMetrics cacheMetrics;
+    @Resource
+    private CacheRebuildExecutor cacheRebuildExecutor;
+
+    /**
+     * 查询商铺缓存预热进度
+     * @return 预热状态、页数和已加载的商铺数
+     */
+    @GetMapping("/warmup")
+    public Result warmupProgress() {
+        return Result.ok(shopCacheWarmer.progress());
+    }
+
+    /**
+     * 查询当前热点key
+     * @return key -> 滑动窗口内的估计访问次数, 按次数倒序
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(cacheClient.hotKeys());
+    }
+
+    /**
+     * 查询缓存指标
+     * @return 前缀 -> 命中/未命中/重建计数, Redis与数据库耗时分布(微秒)
+     */
+    @GetMapping("/metrics")
+    public Result metrics() {
+        return Result.ok(cacheMetrics.snapshot());
+    }
+
+    /**
+     * 查询缓存重建线程池状态
+     * @return 队列深度、提交/去重/拒绝次数, 排队与执行耗时分布(微秒)
+     */
+    @GetMapping("/rebuild")
+    public Result rebuildStatus() {
+        return Result.ok(cacheRebuildExecutor.snapshot());
+    }
+}
@@ -11,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 /**
  * <p>
@@ -39,6 +40,16 @@ public class ShopController {
         return shopService.queryIByd(id);
     }
 
+    /**
+     * 根据id列表批量查询商铺信息
+     * @param ids 商铺id列表, 例如 ids=1,2,3
+     * @return 商铺列表
+     */
+    @GetMapping("/list")
+    public Result queryShopByIds(@RequestParam("ids") List<Long> ids) {
+        return shopService.queryByIds(ids);
+    }
+
     /**
      * 新增商铺信息
      * @param shop 商铺数据
@@ -46,10 +57,8 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        // 写入数据库并登记到布隆过滤器
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -55,9 +55,8 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout(){
-        // TODO 实现登出功能
-        return Result.fail("功能未完成");
+    public Result logout(@RequestHeader("authorization") String token){
+        return userService.logout(token);
     }
 
     @GetMapping("/me")
@@ -0,0 +1,45 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IVoucherService;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * 优惠券管理接口, 需要登录且为管理员
+ */
+@RestController
+@RequestMapping("/admin/voucher")
+public class VoucherAdminController {
+
+    @Resource
+    private IVoucherService voucherService;
+
+    /**
+     * 秒杀券补货
+     * @param voucherId 优惠券id
+     * @param amount 补货数量
+     * @return 无
+     */
+    @PutMapping("seckill/{id}/stock")
+    public Result replenishSeckillStock(@PathVariable("id") Long voucherId, @RequestParam("amount") Integer amount) {
+        return voucherService.replenishSeckillStock(voucherId, amount);
+    }
+
+    /**
+     * 分段库存对账, 把各分段剩余库存之和写回数据库
+     * @param voucherId 优惠券id
+     * @return 对账后的库存
+     */
+    @PostMapping("seckill/{id}/reconcile")
+    public Result reconcileSegmentedStock(@PathVariable("id") Long voucherId) {
+        return voucherService.reconcileSegmentedStock(voucherId);
+    }
+}
@@ -1,12 +1,15 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.Result;
 import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.service.impl.VoucherOrderServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -23,8 +26,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class VoucherOrderController {
     @Autowired
     private IVoucherOrderService voucherService;
+    // 同一优惠券每个节点每秒2000次(只在本地判断, 不集中访问Redis); 同一用户同一优惠券每秒1次, 允许突发2次
+    @RateLimit(name = "seckill:voucher", key = "#voucherId", local = true, permitsPerSecond = 2000, capacity = 2000)
+    @RateLimit(name = "seckill:user", key = "#voucherId", perUser = true, permitsPerSecond = 1, capacity = 2)
     @PostMapping("seckill/{id}")
-    public Result seckillVoucher(@PathVariable("id") Long voucherId) {
-        return voucherService.seckillVoucher(voucherId);
+    public Result seckillVoucher(@PathVariable("id") Long voucherId,
+                                 @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return voucherService.seckillVoucher(voucherId, idempotencyKey);
+    }
+
+    // 查询下单结果, 只读Redis, 客户端轮询使用
+    @GetMapping("status/{orderId}")
+    public Result queryOrderStatus(@PathVariable("orderId") Long orderId) {
+        return voucherService.queryOrderStatus(orderId);
     }
 }
@@ -37,6 +37,11 @@ public class SeckillVoucher implements Serializable {
      */
     private Integer stock;
 
+    /**
+     * 库存分段数, 大于1时库存拆分到多个key, 数据库库存只由对账任务同步
+     */
+    private Integer segments;
+
     /**
      * 创建时间
      */
@@ -90,6 +90,12 @@ public class Voucher implements Serializable {
     @TableField(exist = false)
     private LocalDateTime endTime;
 
+    /**
+     * 库存分段数, 大于1时库存拆分到多个key, 用于超高并发的秒杀券
+     */
+    @TableField(exist = false)
+    private Integer segments;
+
     /**
      * 创建时间
      */
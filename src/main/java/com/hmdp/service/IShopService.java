@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -17,4 +19,8 @@ public interface IShopService extends IService<Shop> {
     Result queryIByd(Long id) throws InterruptedException;
     // 修改
     Result update(Shop shop);
+    // 新增
+    Result saveShop(Shop shop);
+    // 批量查询
+    Result queryByIds(List<Long> ids);
 }
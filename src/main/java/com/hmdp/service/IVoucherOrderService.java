@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,5 +18,15 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
 
     Result seckillVoucher(Long voucherId);
 
-    Result createVoucherOrder(Long voucherId);
+    /**
+     * 秒杀下单, 同一用户使用相同幂等键重复提交时: 第一次已成功返回它的订单id, 仍在处理中返回失败提示"请求处理中"
+     */
+    Result seckillVoucher(Long voucherId, String idempotencyKey);
+
+    /**
+     * 查询订单状态: pending 已受理(含失败重试中), created 已创建, failed 重试耗尽创建失败
+     */
+    Result queryOrderStatus(Long orderId);
+
+    void createVoucherOrders(List<VoucherOrder> orders);
 }
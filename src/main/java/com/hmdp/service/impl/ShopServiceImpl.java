@@ -1,29 +1,27 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.CacheClient;
-import com.hmdp.utils.RedisConstants;
-import com.hmdp.utils.RedisData;
-import io.lettuce.core.RedisClient;
+import com.hmdp.utils.CacheInvalidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.*;
@@ -39,10 +37,31 @@ import static com.hmdp.utils.RedisConstants.*;
 @Service
 @Slf4j
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
-    @Resource
-    private StringRedisTemplate srt;
-    private static final ExecutorService CACHE_REDIS_POOL = Executors.newFixedThreadPool(10);
     @Resource private CacheClient rc;
+    @Resource private CacheInvalidator cacheInvalidator;
+
+    /**
+     * 启动完成后加载全部商铺id到布隆过滤器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadShopBloomFilter() {
+        rc.loadBloomFilter(CACHE_SHOP_KEY, count(), () -> listObjs(new QueryWrapper<Shop>().select("id")));
+    }
+
+    /**
+     * 新增商铺, 同时写入布隆过滤器
+     * @param shop 商铺数据
+     * @return 商铺id
+     */
+    @Override
+    public Result saveShop(Shop shop) {
+        // 1. 写入数据库
+        save(shop);
+        // 2. 写入布隆过滤器
+        rc.addToBloomFilter(CACHE_SHOP_KEY, shop.getId());
+        // 3. 返回店铺id
+        return Result.ok(shop.getId());
+    }
     /**
      * 商铺缓存-综合多种缓存问题的解决方案
      * @param id 商户id
@@ -63,166 +82,41 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return Result.ok(shop);
     }
 
+    /**
+     * 批量查询商铺信息: 一次MGET, 与 queryIByd 相同使用逻辑过期, 已过期的一次IN查询异步重建
+     * @param ids 商户id列表
+     * @return 商户信息, 按传入顺序, 不存在或未预热的id被跳过
+     */
+    @Override
+    public Result queryByIds(List<Long> ids) {
+        Map<Long, Shop> shops = rc.queryBatchWithLogicExpire(CACHE_SHOP_KEY, ids, Shop.class,
+                expiredIds -> listByIds(expiredIds).stream().collect(Collectors.toMap(Shop::getId, Function.identity())),
+                CACHE_SHOP_TTL, TimeUnit.SECONDS);
+        return Result.ok(new ArrayList<>(shops.values()));
+    }
+
     // 商铺缓存-缓存穿透-空值返回
     public Shop queryWithPassThrough(Long id) {
-        // 0. redis key
-        String key = CACHE_SHOP_KEY + id;
-
-        // 1.从redis中获取商品信息
-        String shopJson = srt.opsForValue().get(key);
-
-        // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson))
-            return JSONUtil.toBean(shopJson, Shop.class); // 3.存在直接返回
-
-        // 判断是否为空值
-        if("".equals(shopJson)) return null; // 如果是空值则返回一个错误信息
-
-        // 4.不存在，到数据库中查询
-        Shop shopping = query().eq("id", id).one();
-
-        // 5.查询数据库不存在
-        if(shopping == null) {
-            srt.opsForValue().set(key, "", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
-            return null;
-        }
-
-        // 6.存在先缓存到redis
-        srt.opsForValue().set("cache:shop:" + id, JSONUtil.toJsonStr(shopping), CACHE_SHOP_TTL, TimeUnit.MINUTES);
-
-        // 7. 返回
-        return shopping;
+        return rc.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
     // 商铺缓存-缓存击穿-互斥锁实现
-    public Shop queryWithMutex(Long id) throws InterruptedException {
-        // 0. redis key
-        String key = CACHE_SHOP_KEY + id;
-
-        // 1.从redis中获取商铺信息
-        String shopJson = srt.opsForValue().get(key);
-
-        // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson))
-            return JSONUtil.toBean(shopJson, Shop.class); // 3.存在直接返回
-
-        // 判断是否为空值
-        if("".equals(shopJson)) return null; // 如果是空值则返回一个空值
-
-
-        // 4.不存在，实现缓存重建
-        // 4.1 获取锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        Shop shopping;
-        try {
-            boolean isLock = tryLook(lockKey);
-
-            // 4.2 获取失败
-            if(!isLock){
-                // 4.3 失败休眠0.05s
-                log.info("等待锁释放-50ms");
-                Thread.sleep(50);
-                return queryWithMutex(id);
-            }
-
-            // 4.4 获取成功查询数据库
-            Thread.sleep(200);
-           shopping = query().eq("id", id).one();
-
-            // 5.查询数据库不存在
-            if(shopping == null) {
-                srt.opsForValue().set(key, "", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
-            }
-
-            // 6.存在先缓存到redis
-            srt.opsForValue().set("cache:shop:" + id, JSONUtil.toJsonStr(shopping), CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            // 7. 释放锁
-            unlock(lockKey);
-        }
-
-        // 8. 返回
-        return shopping;
-
-    }
-
-    // 互斥锁
-    private boolean tryLook(String key){
-        Boolean flag = srt.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
-    }
-    // 释放锁
-    private void unlock(String key){
-        srt.delete(key);
+    // 委托给CacheClient: 本JVM内并发请求合并为一次加载, 抢锁失败时退避重读, 不再休眠递归
+    public Shop queryWithMutex(Long id) {
+        return rc.queryWithMutex(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
     // 商铺缓存-缓存击穿-逻辑过期-key永久有效保存方法
     public void saveShop2Redis(Long id,Long expireTime){
         // 1.查询数据库
         Shop shop = getById(id);
-        // 2. 封装逻辑过期时间
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireTime));
-
-        // 3.写入Redis
-        srt.opsForValue().set(CACHE_SHOP_KEY + id, JSONUtil.toJsonStr(redisData));
+        // 2.封装逻辑过期时间并写入Redis
+        rc.setWithLogicExpire(CACHE_SHOP_KEY + id, shop, expireTime, TimeUnit.SECONDS);
     }
 
     // 商铺缓存-缓存击穿-逻辑过期
     public Shop queryWithLogicExpire(Long id) {
-        // 0. redis key
-        String key = CACHE_SHOP_KEY + id;
-
-        // 1.从redis中获取商品信息
-        String shopJson = srt.opsForValue().get(key);
-
-        // 2.判断是否存在
-        if (StrUtil.isBlank(shopJson)) return null; // 3.存在直接返回
-
-        // 4.命中,需要把json反序列为对象
-        RedisData redisData = JSONUtil.toBean(shopJson, RedisData.class);
-        JSONObject shop = (JSONObject) redisData.getData();
-        Shop bean = JSONUtil.toBean(shop, Shop.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-
-        // 5.判断是否过期
-        if(expireTime.isAfter(LocalDateTime.now())) {
-            // 5.1未过期,直接返回结果
-            return bean;
-        }
-        // 5.2已经过期,进行复杂的缓存重建逻辑处理
-        // 6.缓存重建
-        // 6.1 获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLook(lockKey);
-        // 6.2 判断是否获取成功锁
-        if(isLock){
-            try {
-                // 双重检查...
-                CACHE_REDIS_POOL.submit(() -> {
-                    try {
-                        log.info("重建缓存-线程-开始 id:{}", id);
-                        this.saveShop2Redis(id, 20L);
-                        log.info("重建缓存-线程-完成 id:{}", id);
-                    } catch (Exception e) {
-                        log.error("缓存重建失败", e);
-                    } finally {
-                        // ✅ 正确：在异步任务完成后释放锁
-                        unlock(lockKey);
-                        log.info("释放锁，id:{}", id);
-                    }
-                });
-            } catch (Exception e) {
-                // ✅ 只有任务提交失败时才在这里释放锁
-                unlock(lockKey);
-                log.error("提交重建任务失败，释放锁", e);
-            }
-        }
-        return bean;
+        return rc.queryWithLogicExpire(CACHE_SHOP_KEY, id, Shop.class, this::getById, 20L, TimeUnit.SECONDS);
     }
 
     /**
@@ -241,8 +135,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         // 1. 写入数据库
         updateById(shop);
 
-        // 2. 删除缓存
-        srt.delete(CACHE_SHOP_KEY + id);
+        // 2. 事务提交后删除缓存(批量 + 延迟双删 + 失败重试, 同时通知各节点清理本地缓存)
+        cacheInvalidator.invalidateAfterCommit(CACHE_SHOP_KEY + id);
 
         // 3. 返回成功
         return Result.ok();
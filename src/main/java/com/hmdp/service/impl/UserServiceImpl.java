@@ -10,6 +10,7 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.LoginTokenCache;
 import com.hmdp.utils.RedisConstants;
 import com.hmdp.utils.RegexUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -36,6 +37,8 @@ import java.util.concurrent.TimeUnit;
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IUserService {
     @Resource
     private StringRedisTemplate srt;
+    @Resource
+    private LoginTokenCache loginTokenCache;
 
     @Override
     public Result sendCode(String phone, HttpSession session){
@@ -105,6 +108,13 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(token);
     }
 
+    @Override
+    public Result logout(String token) {
+        // 删除Redis中的登录信息, 并让所有节点的本地token缓存失效
+        loginTokenCache.invalidate(token);
+        return Result.ok();
+    }
+
     private User createUserWithPhone(String phone) {
         // 1.创建用户
         User user = new User();
@@ -1,22 +1,69 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
-import com.hmdp.entity.SeckillVoucher;
-import com.hmdp.entity.Voucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.IdWorker;
+import com.hmdp.utils.SeckillSoldOutMarker;
+import com.hmdp.utils.SeckillStockBuckets;
+import com.hmdp.utils.SeckillVoucherRegistry;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.aop.framework.AopContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import java.time.LocalDateTime;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_IDEMPOTENCY_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_IDEMPOTENCY_TTL;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_DLQ_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_TTL;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_TIME_KEY;
+import static com.hmdp.utils.RedisConstants.seckillKey;
 
 /**
  * <p>
@@ -32,72 +79,525 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private ISeckillVoucherService seckillVoucherService;
     @Resource
-    private RedisIdWorker redisIdWorker;
+    private IdWorker idWorker;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private SeckillProperties seckillProperties;
+    @Resource
+    private SeckillSoldOutMarker soldOutMarker;
+    @Resource
+    private SeckillStockBuckets stockBuckets;
+    @Resource
+    private SeckillVoucherRegistry voucherRegistry;
+
+    // 秒杀资格判断脚本
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+    }
+    // 分段库存的下单资格预占脚本
+    private static final DefaultRedisScript<Long> RESERVE_SCRIPT;
+    static {
+        RESERVE_SCRIPT = new DefaultRedisScript<>();
+        RESERVE_SCRIPT.setLocation(new ClassPathResource("seckill_reserve.lua"));
+        RESERVE_SCRIPT.setResultType(Long.class);
+    }
+
+    // 脚本返回值对应的失败信息, 0 为成功
+    private static final String[] SECKILL_ERRORS = {null, "库存不足", "用户已经购买过一次", "秒杀尚未开始", "秒杀已经结束"};
+    // 库存不足
+    private static final long SECKILL_SOLD_OUT = 1;
+    // 秒杀信息未加载到Redis
+    private static final long SECKILL_NOT_LOADED = 5;
+    // 分段库存
+    private static final long SECKILL_SEGMENTED = 6;
+    // 订单状态: 已受理待写库(含重试中), 已写库, 重试耗尽转入死信队列
+    private static final String STATUS_PENDING = "pending";
+    private static final String STATUS_CREATED = "created";
+    private static final String STATUS_FAILED = "failed";
+    // 幂等键的占位值, 第一次请求处理完成前重复提交返回"处理中"
+    private static final String IDEMPOTENCY_PROCESSING = "processing";
+
+    // 消费订单消息队列, 批量写入数据库
+    private final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor(r -> new Thread(r, "seckill-order"));
+    private volatile boolean running = true;
+    // 代理对象(事务相关), 消费线程中无法通过 AopContext 获取, 重启后处理pending消息时也还没有请求进来
+    @Lazy
+    @Resource
+    private IVoucherOrderService proxy;
+
+    @PostConstruct
+    private void init() {
+        // 消费者名称必须每个节点唯一, 未配置时使用 主机名-进程号; 重启后名称变化, 上次未确认的消息由空闲接管处理
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        if (StrUtil.isBlank(stream.getConsumer())) {
+            // RuntimeMXBean的名称为 进程号@主机名
+            String[] name = ManagementFactory.getRuntimeMXBean().getName().split("@", 2);
+            stream.setConsumer(name.length == 2 ? name[1] + "-" + name[0] : name[0]);
+            log.info("未配置订单消息队列的消费者名称, 使用:{}", stream.getConsumer());
+        }
+        createConsumerGroup();
+        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+    }
+
+    // XGROUP CREATE stream.orders g1 0 MKSTREAM, 消费者组已存在时忽略
+    private void createConsumerGroup() {
+        String group = seckillProperties.getStream().getGroup();
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XGROUP",
+                    bytes("CREATE"), bytes(SECKILL_ORDER_STREAM_KEY), bytes(group), bytes("0"), bytes("MKSTREAM")));
+        } catch (Exception e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")) throw e;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private class VoucherOrderHandler implements Runnable {
+        @Override
+        public void run() {
+            // 0.先接管其他消费者遗留的消息, 再处理上次未确认的消息
+            claimIdlePending();
+            handlePendingList();
+            long claimInterval = seckillProperties.getStream().getClaimInterval().toMillis();
+            long nextClaim = System.currentTimeMillis() + claimInterval;
+            while (running) {
+                try {
+                    // 定期接管空闲消息并重试本节点未确认的消息
+                    if (System.currentTimeMillis() >= nextClaim) {
+                        nextClaim = System.currentTimeMillis() + claimInterval;
+                        claimIdlePending();
+                        handlePendingList();
+                    }
+                    // 1.获取消息队列中的订单信息, 攒够一批或等待超时
+                    List<MapRecord<String, Object, Object>> records = readBatch();
+                    // 2.没有消息, 继续下一次循环
+                    if (records.isEmpty()) continue;
+                    // 3.批量创建订单并确认
+                    handleBatch(records);
+                } catch (Exception e) {
+                    log.error("处理订单异常", e);
+                    handlePendingList();
+                }
+            }
+        }
+    }
+
+    // XREADGROUP GROUP g1 c1 COUNT n BLOCK t STREAMS stream.orders >, 直到攒够 batchSize 条或超时
+    private List<MapRecord<String, Object, Object>> readBatch() {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        List<MapRecord<String, Object, Object>> batch = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + stream.getBatchTimeout().toMillis();
+        while (running && batch.size() < stream.getBatchSize()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) break;
+            List<MapRecord<String, Object, Object>> list = readGroup(
+                    StreamReadOptions.empty().count(stream.getBatchSize() - batch.size()).block(Duration.ofMillis(remaining)),
+                    ReadOffset.lastConsumed());
+            if (list == null || list.isEmpty()) break;
+            batch.addAll(list);
+        }
+        return batch;
+    }
+
+    // 以本消费者身份读取订单流
+    // read(Consumer, StreamReadOptions, StreamOffset...) 的可变参数是泛型数组, 这里只传一个 StreamOffset, 类型安全
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> readGroup(StreamReadOptions options, ReadOffset offset) {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        return stringRedisTemplate.opsForStream().read(
+                Consumer.from(stream.getGroup(), stream.getConsumer()),
+                options,
+                StreamOffset.create(SECKILL_ORDER_STREAM_KEY, offset)
+        );
+    }
+
+    // 接管其他消费者空闲超过 claim-min-idle 的消息: XPENDING 找出空闲消息, XCLAIM ... JUSTID 转到本消费者,
+    // 之后由 handlePendingList 处理; XCLAIM 在服务端再次判断空闲时间, 多个节点同时接管时只有一个成功
+    private void claimIdlePending() {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        long minIdle = stream.getClaimMinIdle().toMillis();
+        try {
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                    SECKILL_ORDER_STREAM_KEY, stream.getGroup(), Range.unbounded(), 1000L);
+            List<byte[]> args = new ArrayList<>();
+            args.add(bytes(SECKILL_ORDER_STREAM_KEY));
+            args.add(bytes(stream.getGroup()));
+            args.add(bytes(stream.getConsumer()));
+            args.add(bytes(String.valueOf(minIdle)));
+            int header = args.size();
+            for (PendingMessage message : pending) {
+                if (stream.getConsumer().equals(message.getConsumerName())) continue;
+                if (message.getElapsedTimeSinceLastDelivery().toMillis() < minIdle) continue;
+                args.add(bytes(message.getIdAsString()));
+            }
+            if (args.size() == header) return;
+            int count = args.size() - header;
+            args.add(bytes("JUSTID"));
+            stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                    connection.execute("XCLAIM", args.toArray(new byte[0][])));
+            log.warn("接管其他消费者空闲的订单消息, count:{}", count);
+        } catch (Exception e) {
+            log.error("接管空闲订单消息失败", e);
+        }
+    }
+
+    // 处理已读取但未确认的消息(pending-list), 批量失败时逐条重试, 仍失败的留到下次处理,
+    // 投递次数达到 max-deliveries 时转入死信队列
+    private void handlePendingList() {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        String lastId = "0";
+        while (running) {
+            try {
+                // 1.获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT n STREAMS stream.orders 0
+                List<MapRecord<String, Object, Object>> list = readGroup(
+                        StreamReadOptions.empty().count(stream.getBatchSize()), ReadOffset.from(lastId));
+                // 2.没有未确认的消息, 结束
+                if (list == null || list.isEmpty()) break;
+                lastId = list.get(list.size() - 1).getId().getValue();
+                try {
+                    handleBatch(list);
+                } catch (Exception e) {
+                    log.error("批量处理pending订单异常, 逐条重试", e);
+                    for (MapRecord<String, Object, Object> record : list) {
+                        try {
+                            handleBatch(Collections.singletonList(record));
+                        } catch (Exception ex) {
+                            log.error("处理pending订单失败, id:{}", record.getId(), ex);
+                            // 未达到投递次数上限时消息留在pending-list等待重试, 状态保持pending;
+                            // 只有转入死信队列后才是最终的failed
+                            if (deliveryCount(record.getId()) >= stream.getMaxDeliveries()) {
+                                deadLetter(record, ex);
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.error("读取pending订单异常", e);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // 消息的投递次数 XPENDING stream.orders g1 id id 1, 查询失败时返回0, 下次重试
+    private long deliveryCount(RecordId id) {
+        try {
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(SECKILL_ORDER_STREAM_KEY,
+                    seckillProperties.getStream().getGroup(), Range.closed(id.getValue(), id.getValue()), 1L);
+            return pending.isEmpty() ? 0 : pending.get(0).getTotalDeliveryCount();
+        } catch (Exception e) {
+            log.error("查询订单消息投递次数失败, id:{}", id, e);
+            return 0;
+        }
+    }
+
+    // 转入死信队列并确认消息, 再归还Redis中的库存和下单资格
+    // 先确认后归还: 归还前宕机只会少卖一件(死信中有记录可人工处理), 不会因重复归还而超卖
+    private void deadLetter(MapRecord<String, Object, Object> record, Exception cause) {
+        VoucherOrder order = toOrder(record);
+        try {
+            // 1.写入死信队列, 带上原消息id和失败原因
+            Map<String, String> value = new HashMap<>();
+            record.getValue().forEach((k, v) -> value.put(k.toString(), v.toString()));
+            value.put("streamId", record.getId().getValue());
+            value.put("error", String.valueOf(cause.getMessage()));
+            stringRedisTemplate.opsForStream().add(SECKILL_ORDER_DLQ_KEY, value);
+            // 2.确认消息, 不再重试
+            stringRedisTemplate.opsForStream().acknowledge(SECKILL_ORDER_STREAM_KEY,
+                    seckillProperties.getStream().getGroup(), record.getId());
+        } catch (Exception e) {
+            log.error("订单消息转入死信队列失败, id:{}", record.getId(), e);
+            return;
+        }
+        // 3.归还库存和一人一单资格, 清除售罄标记
+        Long voucherId = order.getVoucherId();
+        if (Boolean.TRUE.equals(order.getSegmented())) {
+            stockBuckets.add(voucherId, Math.max(1, stockBuckets.segments(voucherId)), 1);
+        } else {
+            stringRedisTemplate.opsForValue().increment(seckillKey(SECKILL_STOCK_KEY, voucherId));
+        }
+        stringRedisTemplate.opsForSet().remove(seckillKey(SECKILL_ORDER_KEY, voucherId), order.getUserId().toString());
+        soldOutMarker.reset(voucherId);
+        updateStatus(Collections.singletonList(order), STATUS_FAILED);
+        log.error("订单消息多次写库失败, 已转入死信队列, id:{}, orderId:{}", record.getId(), order.getId());
+    }
+
+    // 一个事务写入一批订单, 提交后更新订单状态再确认消息 XACK stream.orders g1 id...
+    private void handleBatch(List<MapRecord<String, Object, Object>> records) {
+        List<VoucherOrder> orders = new ArrayList<>(records.size());
+        RecordId[] ids = new RecordId[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            orders.add(toOrder(records.get(i)));
+            ids[i] = records.get(i).getId();
+        }
+        proxy.createVoucherOrders(orders);
+        updateStatus(orders, STATUS_CREATED);
+        stringRedisTemplate.opsForStream().acknowledge(SECKILL_ORDER_STREAM_KEY, seckillProperties.getStream().getGroup(), ids);
+    }
+
+    private static VoucherOrder toOrder(MapRecord<String, Object, Object> record) {
+        return BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true);
+    }
+
+    // 批量写入订单状态, 一次pipeline; 状态只用于查询, 写入失败不影响订单
+    private void updateStatus(List<VoucherOrder> orders, String status) {
+        long ttl = TimeUnit.MINUTES.toSeconds(SECKILL_ORDER_STATUS_TTL);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (VoucherOrder order : orders) {
+                    String key = SECKILL_ORDER_STATUS_KEY + order.getId();
+                    conn.hMSet(key, statusHash(order, status));
+                    conn.expire(key, ttl);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("更新订单状态失败, status:{}, size:{}", status, orders.size(), e);
+        }
+    }
+
+    private static Map<String, String> statusHash(VoucherOrder order, String status) {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("status", status);
+        hash.put("userId", order.getUserId().toString());
+        hash.put("voucherId", order.getVoucherId().toString());
+        return hash;
+    }
+
     @Override
     public Result seckillVoucher(Long voucherId) {
-        //  1. 查询优惠卷
-        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
-        //  2.判断秒杀是否开始
-        LocalDateTime now = LocalDateTime.now();
-        if(now.isBefore(voucher.getBeginTime()) ){
-            // 秒杀尚未开始
+        return seckill(voucherId, UserHolder.getUser().getId());
+    }
+
+    @Override
+    public Result seckillVoucher(Long voucherId, String idempotencyKey) {
+        if (StrUtil.isBlank(idempotencyKey)) {
+            return seckillVoucher(voucherId);
+        }
+        Long userId = UserHolder.getUser().getId();
+        // 1.用幂等键占位, 值为处理中, 秒杀成功后才写入订单id
+        String key = SECKILL_IDEMPOTENCY_KEY + userId + ":" + idempotencyKey;
+        Boolean claimed = stringRedisTemplate.opsForValue()
+                .setIfAbsent(key, IDEMPOTENCY_PROCESSING, SECKILL_IDEMPOTENCY_TTL, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(claimed)) {
+            // 2.重复提交: 第一次请求已成功时返回它的订单id, 由客户端查询订单状态; 仍在处理中时让客户端稍后重试
+            String existing = stringRedisTemplate.opsForValue().get(key);
+            if (existing == null || IDEMPOTENCY_PROCESSING.equals(existing)) {
+                return Result.fail("请求处理中, 请稍后重试");
+            }
+            return Result.ok(Long.valueOf(existing));
+        }
+        // 3.第一次请求: 成功时写入订单id; 失败时释放幂等键, 重试时重新判断并得到明确结果
+        Result result;
+        try {
+            result = seckill(voucherId, userId);
+        } catch (RuntimeException e) {
+            stringRedisTemplate.delete(key);
+            throw e;
+        }
+        if (Boolean.TRUE.equals(result.getSuccess())) {
+            stringRedisTemplate.opsForValue().set(key, result.getData().toString(), SECKILL_IDEMPOTENCY_TTL, TimeUnit.MINUTES);
+        } else {
+            stringRedisTemplate.delete(key);
+        }
+        return result;
+    }
+
+    private Result seckill(Long voucherId, Long userId) {
+        // 0.本节点已标记售罄, 直接返回, 不访问Redis
+        if (soldOutMarker.isSoldOut(voucherId)) {
+            return Result.fail("库存不足");
+        }
+        // 1.本地判断时间窗口, 注册表中没有时加载一次
+        SeckillVoucherRegistry.SeckillWindow window = voucherRegistry.get(voucherId);
+        if (window == null) {
+            window = voucherRegistry.load(voucherId);
+            if (window == null) {
+                return Result.fail("优惠券不存在");
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (now < window.getBegin()) {
             return Result.fail("秒杀尚未开始");
         }
-        //  3.判断秒杀是否已经结束
-        if(now.isAfter(voucher.getEndTime())){
-            // 秒杀已经结束
+        if (now > window.getEnd()) {
             return Result.fail("秒杀已经结束");
         }
+        // 判断库存前获取补货代数, 期间发生补货时售罄标记作废
+        long generation = soldOutMarker.generation(voucherId);
+        long orderId = idWorker.nextId("order");
+        // 2.判断库存和一人一单, 通过后发送订单消息
+        long r = acquire(voucherId, window.getSegments(), userId, orderId);
+        if (r == SECKILL_NOT_LOADED || r == SECKILL_SEGMENTED) {
+            // 2.1 Redis中的秒杀信息与本地不一致(Redis数据丢失、分段数变化等), 重新加载后重试一次
+            window = voucherRegistry.load(voucherId);
+            if (window == null) {
+                return Result.fail("优惠券不存在");
+            }
+            r = acquire(voucherId, window.getSegments(), userId, orderId);
+        }
+        // 3.判断结果是否为0
+        if (r == SECKILL_SOLD_OUT) {
+            // 库存为0, 标记售罄并通知其他节点
+            soldOutMarker.markSoldOut(voucherId, generation);
+        }
+        if (r != 0) {
+            // 3.1 不为0, 代表没有购买资格
+            return Result.fail(seckillError(r));
+        }
+        // 3.2 为0, 有购买资格, 订单已写入消息队列, 返回订单id
+        return Result.ok(orderId);
+    }
+
+    // 脚本返回值对应的失败信息, 脚本执行失败(-1)或未知返回值时为"秒杀失败"
+    private static String seckillError(long r) {
+        return r > 0 && r < SECKILL_ERRORS.length ? SECKILL_ERRORS[(int) r] : "秒杀失败";
+    }
+
+    // 判断资格并扣减库存, 通过后发送订单消息; 返回脚本结果, 发送失败时为-1
+    private long acquire(Long voucherId, int segments, Long userId, long orderId) {
+        return segments > 1
+                ? acquireSegmented(voucherId, segments, userId, orderId)
+                : acquireSingle(voucherId, userId, orderId);
+    }
+
+    // 单个库存key: 时间窗口、库存、一人一单在一个脚本中判断并扣减
+    private long acquireSingle(Long voucherId, Long userId, long orderId) {
+        String stockKey = seckillKey(SECKILL_STOCK_KEY, voucherId);
+        String orderKey = seckillKey(SECKILL_ORDER_KEY, voucherId);
+        Long r = stringRedisTemplate.execute(SECKILL_SCRIPT,
+                Arrays.asList(stockKey, seckillKey(SECKILL_TIME_KEY, voucherId), orderKey),
+                userId.toString(), String.valueOf(System.currentTimeMillis()));
+        if (r == null) return -1;
+        if (r != 0) return r;
+        if (!sendOrder(voucherId, userId, orderId, false)) {
+            // 发送失败, 归还库存和资格
+            stringRedisTemplate.opsForValue().increment(stockKey);
+            stringRedisTemplate.opsForSet().remove(orderKey, userId.toString());
+            return -1;
+        }
+        return 0;
+    }
 
-        //  4.判断库存是否充足
-        if(voucher.getStock() < 1){
-            return Result.fail("库存不足");
+    // 分段库存: 预占下单资格, 扣减一个分段的库存, 发送订单消息, 失败时依次归还
+    private long acquireSegmented(Long voucherId, int segments, Long userId, long orderId) {
+        String orderKey = seckillKey(SECKILL_ORDER_KEY, voucherId);
+        // 1.判断时间窗口并预占一人一单资格
+        Long r = stringRedisTemplate.execute(RESERVE_SCRIPT,
+                Arrays.asList(seckillKey(SECKILL_TIME_KEY, voucherId), orderKey),
+                userId.toString(), String.valueOf(System.currentTimeMillis()));
+        if (r == null) return -1;
+        if (r != 0) return r;
+        // 2.随机扣减一个分段, 为空时尝试其他分段
+        int bucket = stockBuckets.decrement(voucherId, segments);
+        if (bucket < 0) {
+            // 2.1 所有分段都已售罄, 归还资格
+            stringRedisTemplate.opsForSet().remove(orderKey, userId.toString());
+            return SECKILL_SOLD_OUT;
         }
+        // 3.发送订单消息, 库存由对账任务同步到数据库
+        if (!sendOrder(voucherId, userId, orderId, true)) {
+            // 3.1 发送失败, 归还库存和资格
+            stockBuckets.increment(voucherId, bucket, 1);
+            stringRedisTemplate.opsForSet().remove(orderKey, userId.toString());
+            return -1;
+        }
+        return 0;
+    }
 
-        // 5.创建一人一单的枷锁方案
-        // 查询用户
-        Long userId = UserHolder.getUser().getId();
-        synchronized (userId.toString().intern()){
-            // 获取代理对象(事物相关)
-            IVoucherOrderService proxy = (IVoucherOrderService) AopContext.currentProxy();
-            return proxy.createVoucherOrder(voucherId);
+    // 先写pending状态再发送订单消息, 避免覆盖消费者写入的created; 失败时删除状态, 由调用方归还库存和资格
+    // 消息队列和订单状态与秒杀券的key不在同一个slot, 不能放进脚本: 扣减后发送前宕机只会少卖, 不会超卖
+    private boolean sendOrder(Long voucherId, Long userId, long orderId, boolean segmented) {
+        Map<String, String> order = new HashMap<>();
+        order.put("userId", userId.toString());
+        order.put("voucherId", voucherId.toString());
+        order.put("id", String.valueOf(orderId));
+        if (segmented) order.put("segmented", "true");
+        String statusKey = SECKILL_ORDER_STATUS_KEY + orderId;
+        try {
+            Map<String, String> status = new HashMap<>();
+            status.put("userId", userId.toString());
+            status.put("voucherId", voucherId.toString());
+            status.put("status", STATUS_PENDING);
+            stringRedisTemplate.opsForHash().putAll(statusKey, status);
+            stringRedisTemplate.expire(statusKey, SECKILL_ORDER_STATUS_TTL, TimeUnit.MINUTES);
+            stringRedisTemplate.opsForStream().add(SECKILL_ORDER_STREAM_KEY, order);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("发送秒杀订单消息失败, voucherId:{}, userId:{}", voucherId, userId, e);
+            try {
+                stringRedisTemplate.delete(statusKey);
+            } catch (RuntimeException ex) {
+                log.warn("删除订单状态失败, orderId:{}", orderId, ex);
+            }
+            return false;
         }
+    }
 
+    @Override
+    public Result queryOrderStatus(Long orderId) {
+        // 只查询Redis中的订单状态, 不访问数据库
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(SECKILL_ORDER_STATUS_KEY + orderId);
+        // 不存在或不是当前用户的订单
+        if (hash.isEmpty() || !UserHolder.getUser().getId().toString().equals(hash.get("userId"))) {
+            return Result.fail("订单不存在");
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("orderId", orderId);
+        status.put("voucherId", Long.valueOf(hash.get("voucherId").toString()));
+        status.put("status", hash.get("status"));
+        return Result.ok(status);
     }
 
+    @Override
     @Transactional
-    public Result createVoucherOrder(Long voucherId) {
-        //  5.一人一单
-        Long userId = UserHolder.getUser().getId();
-        //  5.1 查询订单
-        int count = query().eq("user_id", userId)
-                .eq("voucher_id", voucherId)
-                .count();
-        //  5,2 判断是否存在
-        if (count > 0) {
-            // 用户已经购买过了
-            log.info("用户:{}已经购买过一次秒杀劵:{}了", userId, voucherId);
-            return Result.fail("用户已经购买过一次");
-        }
-
-        //  6.扣减库存
-        seckillVoucherService.update()
-                .setSql("stock = stock - 1")
-                .eq("voucher_id", voucherId)
-//                .eq("stock", voucher.getStock()) // CAS 保证库存一致性(仿版本号法)
-                .gt("stock",0)              // CAS 保证库一致性(更好的写法)
-                .update();
-
-        //  7.创建订单
-        VoucherOrder voucherOrder = new VoucherOrder();
-        // 7.1 创建订单id
-        Long orderId = redisIdWorker.nextId("order");
-        voucherOrder.setId(orderId);
-        // 7.2 用户Id
-        voucherOrder.setUserId(userId);
-        // 7.3 优惠券Id
-        voucherOrder.setVoucherId(voucherId);
-        //  8.返回订单结果
-        return Result.ok(orderId);
+    public void createVoucherOrders(List<VoucherOrder> orders) {
+        //  5.过滤已经写入的订单, 消息可能重复投递(写库成功但确认前宕机)
+        List<Long> ids = orders.stream().map(VoucherOrder::getId).collect(Collectors.toList());
+        Set<Long> existing = new HashSet<>(listObjs(
+                new QueryWrapper<VoucherOrder>().select("id").in("id", ids), o -> Long.valueOf(o.toString())));
+        List<VoucherOrder> fresh = orders.stream()
+                .filter(o -> !existing.contains(o.getId()))
+                .collect(Collectors.toList());
+        if (fresh.isEmpty()) return;
+
+        //  6.一条SQL写入整批订单, 一人一单已由Redis保证
+        getBaseMapper().insertBatch(fresh);
+
+        //  7.按优惠券聚合扣减库存, 每个优惠券一条UPDATE; 分段库存的券由对账任务同步, 不在这里扣减
+        Map<Long, Long> counts = fresh.stream()
+                .filter(o -> !Boolean.TRUE.equals(o.getSegmented()))
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, Collectors.counting()));
+        counts.forEach((voucherId, count) -> {
+            boolean success = seckillVoucherService.update()
+                    .setSql("stock = stock - " + count)
+                    .eq("voucher_id", voucherId)
+                    .ge("stock", count)              // CAS 保证库一致性
+                    .update();
+            if (!success) {
+                log.error("秒杀劵:{}库存不足, 扣减数量:{}", voucherId, count);
+            }
+        });
+    }
+
+    // 停止消费, 当前批次处理完后退出, 未确认的消息重启后从pending-list继续处理
+    @PreDestroy
+    private void destroy() throws InterruptedException {
+        running = false;
+        SECKILL_ORDER_EXECUTOR.shutdown();
+        if (!SECKILL_ORDER_EXECUTOR.awaitTermination(10, TimeUnit.SECONDS)) {
+            SECKILL_ORDER_EXECUTOR.shutdownNow();
+        }
     }
 }
@@ -7,12 +7,22 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.SeckillSoldOutMarker;
+import com.hmdp.utils.SeckillStockBuckets;
+import com.hmdp.utils.SeckillVoucherRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
 import java.util.List;
 
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.seckillKey;
+
 /**
  * <p>
  *  服务实现类
@@ -21,11 +31,20 @@ import java.util.List;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> implements IVoucherService {
 
     @Resource
     private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private SeckillSoldOutMarker soldOutMarker;
+    @Resource
+    private SeckillStockBuckets stockBuckets;
+    @Resource
+    private SeckillVoucherRegistry voucherRegistry;
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
@@ -46,6 +65,64 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setStock(voucher.getStock());
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
+        int segments = voucher.getSegments() == null || voucher.getSegments() <= 1 ? 0 : voucher.getSegments();
+        seckillVoucher.setSegments(segments);
         seckillVoucherService.save(seckillVoucher);
+        // 事务提交后把库存和时间窗口写入Redis并通知所有节点, 秒杀时不再查询数据库
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                voucherRegistry.register(seckillVoucher, segments);
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public Result replenishSeckillStock(Long voucherId, Integer amount) {
+        if (amount == null || amount <= 0) {
+            return Result.fail("补货数量必须大于0");
+        }
+        // 1.增加数据库库存
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock + " + amount)
+                .eq("voucher_id", voucherId)
+                .update();
+        if (!success) {
+            return Result.fail("秒杀券不存在");
+        }
+        // 2.事务提交后增加Redis库存并清除所有节点的售罄标记
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                // 2.1 分段库存平均分配到各分段; 未分段的库存未加载到Redis时, 下次秒杀会从数据库加载最新库存
+                int segments = stockBuckets.segments(voucherId);
+                String key = seckillKey(SECKILL_STOCK_KEY, voucherId);
+                if (segments > 1) {
+                    stockBuckets.add(voucherId, segments, amount);
+                } else if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+                    stringRedisTemplate.opsForValue().increment(key, amount);
+                }
+                // 2.2 清除售罄标记
+                soldOutMarker.reset(voucherId);
+            }
+        });
+        return Result.ok();
+    }
+
+    @Override
+    public Result reconcileSegmentedStock(Long voucherId) {
+        int segments = stockBuckets.segments(voucherId);
+        if (segments <= 1) {
+            return Result.fail("不是分段库存的秒杀券");
+        }
+        // 各分段剩余库存之和即为真实库存, 分段库存的订单写库时不扣减数据库库存
+        long stock = stockBuckets.sum(voucherId, segments);
+        seckillVoucherService.update()
+                .set("stock", stock)
+                .eq("voucher_id", voucherId)
+                .update();
+        log.debug("分段库存对账完成, voucherId:{}, stock:{}", voucherId, stock);
+        return Result.ok(stock);
     }
 }
@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.AdminProperties;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 管理接口拦截器, 在登录拦截器之后执行, 只允许配置的管理员访问
+ */
+@Slf4j
+@Component
+public class AdminInterceptor implements HandlerInterceptor {
+    @Resource
+    private AdminProperties adminProperties;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        UserDTO user = UserHolder.getUser();
+        if (user == null) {
+            response.setStatus(401);
+            return false;
+        }
+        if (!adminProperties.getUserIds().contains(user.getId())) {
+            log.warn("非管理员访问管理接口, userId:{}, uri:{}", user.getId(), request.getRequestURI());
+            response.setStatus(403);
+            return false;
+        }
+        return true;
+    }
+}
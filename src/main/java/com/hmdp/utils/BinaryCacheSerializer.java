@@ -0,0 +1,54 @@
+package com.hmdp.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 紧凑二进制格式: [魔数 1字节][版本 1字节][逻辑过期时间 8字节][Smile编码的数据]
+ * 读取时只需解析一次, 且不再包一层 RedisData
+ * 非本格式的数据(历史JSON)交给 JsonCacheSerializer 解析, 便于平滑迁移
+ */
+public class BinaryCacheSerializer implements CacheSerializer {
+
+    private static final byte MAGIC = (byte) 0xC5;
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = 10;
+
+    private final ObjectMapper mapper = new ObjectMapper(new SmileFactory())
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final JsonCacheSerializer legacy = new JsonCacheSerializer();
+
+    @Override
+    public byte[] serialize(Object value, long expireTime) {
+        try {
+            byte[] payload = mapper.writeValueAsBytes(value);
+            return ByteBuffer.allocate(HEADER_LENGTH + payload.length)
+                    .put(MAGIC)
+                    .put(VERSION)
+                    .putLong(expireTime)
+                    .put(payload)
+                    .array();
+        } catch (IOException e) {
+            throw new RuntimeException("缓存序列化失败", e);
+        }
+    }
+
+    @Override
+    public <R> CacheValue<R> deserialize(byte[] bytes, Class<R> type) {
+        // 历史JSON数据
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) return legacy.deserialize(bytes, type);
+        try {
+            long expireTime = ByteBuffer.wrap(bytes, 2, 8).getLong();
+            R data = mapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, type);
+            return new CacheValue<>(data, expireTime);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存反序列化失败", e);
+        }
+    }
+}
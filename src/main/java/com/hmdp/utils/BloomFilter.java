@@ -0,0 +1,76 @@
+package com.hmdp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 基于位数组的布隆过滤器, 线程安全且无锁
+ * 判断不存在时一定不存在, 判断存在时有 fpp 概率误判
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计插入的元素数量
+     * @param fpp 期望的误判率, 例如 0.01
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) expectedInsertions = 1;
+        if (fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("fpp必须在(0,1)之间");
+        // 最优位数 m = -n*ln(p)/(ln2)^2, 最优哈希次数 k = m/n*ln2
+        long m = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitSize = Math.max(64, (m + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (bitSize / 64));
+    }
+
+    public void put(String value) {
+        long h = fnv1a(value);
+        long h1 = mix(h);
+        long h2 = mix(h ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitSize;
+            int slot = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = bits.get(slot);
+                if ((old & mask) != 0) break;
+            } while (!bits.compareAndSet(slot, old, old | mask));
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long h = fnv1a(value);
+        long h1 = mix(h);
+        long h2 = mix(h ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+        }
+        return true;
+    }
+
+    // FNV-1a 64位哈希
+    private static long fnv1a(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // murmur3 的 fmix64, 打散低位
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,44 +1,225 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
-import lombok.AllArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.CacheProperties;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
-import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOOM_CHANNEL;
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
+import static com.hmdp.utils.RedisConstants.LOCK_SHOP_TTL;
 
 @Slf4j
 @Component
-@AllArgsConstructor
-public class CacheClient {
+@RequiredArgsConstructor
+public class CacheClient implements MessageListener {
 
     private final StringRedisTemplate stringRedisTemplate;
-    private static final ExecutorService CACHE_REDIS_POOL = Executors.newFixedThreadPool(10);
+    // 缓存值按字节读写, 编码由 serializer 决定
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+    private final CacheProperties cacheProperties;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectProvider<CacheSerializer> serializerProvider;
+    private final CacheMetrics cacheMetrics;
+    // 共享的有界重建线程池, 同一个key同时只有一个重建任务
+    private final CacheRebuildExecutor rebuildExecutor;
+    // 重建互斥锁, 锁名称即缓存key
+    private final RedisLockFactory lockFactory;
+
+    // 缓存值序列化方式
+    private CacheSerializer serializer;
+    // 本地一级缓存(L1), 未开启时为null
+    private Cache<String, Object> localCache;
+    // 热点key探测及热点key的短TTL本地副本, 未开启时为null
+    private HotKeyDetector hotKeyDetector;
+    private Cache<String, Object> hotCache;
+    private ScheduledExecutorService hotKeyScheduler;
+    // 按key前缀注册的布隆过滤器, 以及正在加载中的过滤器
+    private final Map<String, BloomFilter> bloomFilters = new ConcurrentHashMap<>();
+    private final Map<String, BloomFilter> loadingBloomFilters = new ConcurrentHashMap<>();
+    // 本JVM内正在进行的加载(single-flight), 同一个key的并发请求共享同一个future
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    // 各前缀实测的重建耗时(毫秒)
+    private final Map<String, Long> rebuildCosts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // 优先使用自定义的序列化Bean, 否则按配置选择
+        serializer = serializerProvider.getIfAvailable(() -> "binary".equalsIgnoreCase(cacheProperties.getSerializer())
+                ? new BinaryCacheSerializer() : new JsonCacheSerializer());
+        CacheProperties.Local local = cacheProperties.getLocal();
+        if (local.isEnabled()) {
+            localCache = Caffeine.newBuilder()
+                    .maximumSize(local.getMaximumSize())
+                    .expireAfterWrite(local.getTtl().toMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+        }
+        CacheProperties.HotKey hotKey = cacheProperties.getHotKey();
+        if (hotKey.isEnabled()) {
+            hotKeyDetector = new HotKeyDetector(hotKey.getSlices(), hotKey.getWidth(), hotKey.getDepth(),
+                    hotKey.getThreshold(), hotKey.getTopK());
+            hotCache = Caffeine.newBuilder()
+                    .maximumSize(hotKey.getTopK() * 4L)
+                    .expireAfterWrite(hotKey.getLocalTtl().toMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+            // 每过一片时间滑动一次窗口
+            long sliceMillis = Math.max(1, hotKey.getWindow().toMillis() / hotKey.getSlices());
+            hotKeyScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hot-key-rotate");
+                thread.setDaemon(true);
+                return thread;
+            });
+            hotKeyScheduler.scheduleAtFixedRate(hotKeyDetector::rotate, sliceMillis, sliceMillis, TimeUnit.MILLISECONDS);
+        }
+        if (localCache != null || hotCache != null) {
+            // 订阅失效频道, 其他节点删除缓存时同步清理本地副本
+            listenerContainer.addMessageListener(this, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+        }
+        if (cacheProperties.getBloom().isEnabled()) {
+            // 订阅新增频道, 其他节点新增数据时同步写入本地布隆过滤器
+            listenerContainer.addMessageListener(this, new ChannelTopic(CACHE_BLOOM_CHANNEL));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (hotKeyScheduler != null) hotKeyScheduler.shutdownNow();
+    }
 
     // 普通缓存
     public void set(String key, Object value, Long time, TimeUnit unit){
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        cacheRedisTemplate.opsForValue().set(key, encode(value, -1), time, unit);
+        evictLocal(key);
     }
 
     // 逻辑过期缓存
     public void setWithLogicExpire(String key, Object value, Long time, TimeUnit unit){
-        // 设置逻辑过期
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        // 设置逻辑过期并写入Redis
+        long expireTime = System.currentTimeMillis() + unit.toMillis(time);
+        cacheRedisTemplate.opsForValue().set(key, encode(value, expireTime));
+        evictLocal(key);
+    }
+
+    // 批量写入普通缓存, 一次pipeline
+    public void setBatch(Map<String, Object> values, Long time, TimeUnit unit) {
+        if (values.isEmpty()) return;
+        Expiration expiration = Expiration.from(time, unit);
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.set(key.getBytes(StandardCharsets.UTF_8), encode(value, -1),
+                    expiration, RedisStringCommands.SetOption.UPSERT));
+            return null;
+        });
+        values.keySet().forEach(this::evictLocal);
+    }
+
+    // 批量写入逻辑过期缓存, 一次pipeline
+    public void setBatchWithLogicExpire(Map<String, Object> values, Long time, TimeUnit unit) {
+        if (values.isEmpty()) return;
+        long expireTime = System.currentTimeMillis() + unit.toMillis(time);
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.set(key.getBytes(StandardCharsets.UTF_8), encode(value, expireTime)));
+            return null;
+        });
+        values.keySet().forEach(this::evictLocal);
+    }
+
+    // 序列化, 空字符串表示空值, 写入空字节
+    private byte[] encode(Object value, long expireTime) {
+        if ("".equals(value)) return new byte[0];
+        return serializer.serialize(value, expireTime);
+    }
 
-        // 写入Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+    // 删除缓存, 并通知所有节点清理本地缓存
+    public void delete(String key) {
+        stringRedisTemplate.delete(key);
+        evictLocal(key);
+        stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    // 批量删除缓存: 一次DEL, 失效通知一次pipeline发出
+    public void delete(Collection<String> keys) {
+        if (keys.isEmpty()) return;
+        stringRedisTemplate.delete(keys);
+        keys.forEach(this::evictLocal);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] channel = CACHE_INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8);
+            keys.forEach(key -> connection.publish(channel, key.getBytes(StandardCharsets.UTF_8)));
+            return null;
+        });
+    }
+
+    /**
+     * 用全量id构建某个前缀的布隆过滤器, 构建完成前该前缀不做拦截
+     * 先注册加载中的过滤器再查询数据库, 查询期间其他节点新增的数据通过通知写入新过滤器, 不会漏掉
+     * @param prefix key前缀
+     * @param expectedSize 预计的数据量, 用于确定过滤器容量
+     * @param idLoader 查询数据库中存在的全部id
+     */
+    public void loadBloomFilter(String prefix, long expectedSize, Supplier<? extends Collection<?>> idLoader) {
+        CacheProperties.Bloom bloom = cacheProperties.getBloom();
+        if (!bloom.isEnabled()) return;
+        // 预留一倍余量给后续新增的数据
+        long expected = Math.max(bloom.getExpectedInsertions(), expectedSize * 2);
+        BloomFilter filter = new BloomFilter(expected, bloom.getFpp());
+        // 1.先注册, 之后收到的新增通知也要写入新过滤器
+        loadingBloomFilters.put(prefix, filter);
+        try {
+            // 2.查询全量id写入过滤器
+            Collection<?> ids = idLoader.get();
+            for (Object id : ids) {
+                filter.put(id.toString());
+            }
+            // 3.加载完成, 开始拦截
+            bloomFilters.put(prefix, filter);
+            log.info("布隆过滤器加载完成, prefix:{}, size:{}", prefix, ids.size());
+        } finally {
+            loadingBloomFilters.remove(prefix);
+        }
+    }
+
+    // 新增数据后写入布隆过滤器, 并通知所有节点
+    public void addToBloomFilter(String prefix, Object id) {
+        if (!cacheProperties.getBloom().isEnabled()) return;
+        putBloom(prefix, id.toString());
+        stringRedisTemplate.convertAndSend(CACHE_BLOOM_CHANNEL, prefix + id);
+    }
+
+    // 布隆过滤器判断id是否可能存在, 未注册过滤器的前缀一律放行
+    public boolean mightExist(String prefix, Object id) {
+        BloomFilter filter = bloomFilters.get(prefix);
+        return filter == null || filter.mightContain(id.toString());
     }
 
     // 缓存穿透
@@ -54,30 +235,139 @@ public class CacheClient {
         // 0. redis key
         String key =  Prefix + id;
 
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+
+        // 0.1 布隆过滤器判断id不存在, 直接返回, 不访问Redis和数据库
+        if (!mightExist(Prefix, id)) {
+            stats.getBloomRejects().increment();
+            return null;
+        }
+
+        // 0.2 先查本地缓存
+        R local = getLocal(key, type);
+        if (local != null) {
+            stats.getLocalHits().increment();
+            return local;
+        }
+
         // 1.从redis中获取商品信息
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+        byte[] raw = getRaw(stats, key);
 
         // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson))
-            return JSONUtil.toBean(shopJson, type); // 3.存在直接返回
+        if (raw != null && raw.length > 0) {
+            stats.getHits().increment();
+            R r = serializer.deserialize(raw, type).getData();
+            putLocal(key, r);
+            return r; // 3.存在直接返回
+        }
 
         // 判断是否为空值
-        if("".equals(shopJson)) return null; // 如果是空值则返回一个错误信息
+        if(raw != null) {
+            stats.getNullHits().increment();
+            return null; // 如果是空值则返回一个错误信息
+        }
+
+        // 4.不存在，到数据库中查询(同一JVM内只有一个线程去查)
+        stats.getMisses().increment();
+        return singleFlight(key, () -> {
+            R r = loadFromDb(stats, () -> dbRollback.apply(id));
 
-        // 4.不存在，到数据库中查询
-        R r = dbRollback.apply(id);
+            // 5.查询数据库不存在
+            if(r == null) {
+                this.set(key, "", time, unit);
+                return null;
+            }
+
+            // 6.存在先缓存到redis
+            this.set(key, r, time, unit);
+
+            // 7. 返回
+            return r;
+        });
+    }
 
-        // 5.查询数据库不存在
-        if(r == null) {
-            this.set(key, "", time, unit);
+    // 缓存击穿-互斥锁
+    public <R,ID> R queryWithMutex(String Prefix, ID id, Class<R> type,
+                                   Function<ID,R> dbCallback, Long time, TimeUnit unit) {
+        // 0. redis key
+        String key = Prefix + id;
+
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+
+        // 0.1 布隆过滤器判断id不存在, 直接返回
+        if (!mightExist(Prefix, id)) {
+            stats.getBloomRejects().increment();
             return null;
         }
 
-        // 6.存在先缓存到redis
-        this.set(key, r, time, unit);
+        // 0.2 先查本地缓存
+        R local = getLocal(key, type);
+        if (local != null) {
+            stats.getLocalHits().increment();
+            return local;
+        }
+
+        // 1.从redis中获取
+        byte[] raw = getRaw(stats, key);
+
+        // 2.存在直接返回
+        if (raw != null && raw.length > 0) {
+            stats.getHits().increment();
+            R r = serializer.deserialize(raw, type).getData();
+            putLocal(key, r);
+            return r;
+        }
 
-        // 7. 返回
-        return r;
+        // 判断是否为空值
+        if (raw != null) {
+            stats.getNullHits().increment();
+            return null;
+        }
+
+        // 3.不存在, 重建缓存: 同一JVM内只有leader线程去抢Redis锁和查库, 其余线程等待它的结果
+        stats.getMisses().increment();
+        return singleFlight(key, () -> rebuildWithMutex(stats, key, id, type, dbCallback, time, unit));
+    }
+
+    // 互斥锁重建: 抢不到锁说明其他节点在重建, 退避后重新读取缓存, 不再递归
+    private <R,ID> R rebuildWithMutex(CacheMetrics.Stats stats, String key, ID id, Class<R> type,
+                                      Function<ID,R> dbCallback, Long time, TimeUnit unit) {
+        ILock lock = lockFactory.getLock(key);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LOCK_SHOP_TTL);
+        long backoff = 20;
+        while (true) {
+            if (lock.tryLock()) {
+                try {
+                    // 双重检查, 可能已经被其他节点重建
+                    byte[] raw = getRaw(stats, key);
+                    if (raw != null) return raw.length > 0 ? serializer.deserialize(raw, type).getData() : null;
+
+                    // 查询数据库并写入缓存
+                    stats.getRebuilds().increment();
+                    R r = loadFromDb(stats, () -> dbCallback.apply(id));
+                    if (r == null) {
+                        this.set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+                        return null;
+                    }
+                    this.set(key, r, time, unit);
+                    return r;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            stats.getLockContention().increment();
+            // 超过锁的最长持有时间仍未等到, 直接查库兜底
+            if (System.currentTimeMillis() > deadline) return loadFromDb(stats, () -> dbCallback.apply(id));
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            backoff = Math.min(backoff * 2, 200);
+            byte[] raw = getRaw(stats, key);
+            if (raw != null) return raw.length > 0 ? serializer.deserialize(raw, type).getData() : null;
+        }
     }
 
     // 缓存击穿-逻辑过期
@@ -86,62 +376,371 @@ public class CacheClient {
         // 0. redis key
         String key = Prefix + id;
 
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+
+        // 0.1 布隆过滤器判断id不存在, 直接返回
+        if (!mightExist(Prefix, id)) {
+            stats.getBloomRejects().increment();
+            return null;
+        }
+
+        // 0.2 先查本地缓存, 命中则不再访问Redis
+        R local = getLocal(key, type);
+        if (local != null) {
+            stats.getLocalHits().increment();
+            return local;
+        }
+
         // 1.从redis中获取商品信息
-        String json = stringRedisTemplate.opsForValue().get(key);
+        byte[] raw = getRaw(stats, key);
 
         // 2.判断是否存在
-        if (StrUtil.isBlank(json)) return null; // 3.存在直接返回
+        if (raw == null || raw.length == 0) {
+            stats.getMisses().increment();
+            return null; // 3.存在直接返回
+        }
 
-        // 4.命中,需要把json反序列为对象
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R bean = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        LocalDateTime expireTime = redisData.getExpireTime();
+        // 4.命中,需要反序列为对象
+        CacheValue<R> value = serializer.deserialize(raw, type);
+        R bean = value.getData();
 
         // 5.判断是否过期
-        if(expireTime.isAfter(LocalDateTime.now())) {
+        long now = System.currentTimeMillis();
+        if(value.getExpireTime() > now) {
             // 5.1 未过期,直接返回结果
-            log.info("cacheClient-缓存过期判断:未过期");
+            stats.getHits().increment();
+            putLocal(key, bean);
+            // 5.2 临近过期时按概率提前重建, 把热点key的重建分散开
+            if (shouldRefreshEarly(Prefix, value.getExpireTime(), now)) {
+                rebuildAsync(Prefix, key, id, dbCallback, time, unit);
+            }
             return bean;
         }
 
-        // 5.2 已经过期,进行复杂的缓存重建逻辑处理
+        // 5.3 已经过期,进行复杂的缓存重建逻辑处理
+        stats.getLogicalExpiredHits().increment();
+        rebuildAsync(Prefix, key, id, dbCallback, time, unit);
+        return bean;
+    }
+
+    /**
+     * 概率提前重建(XFetch): 当 -delta * beta * ln(rand) >= 距过期剩余时间 时重建
+     * delta 为该前缀实测的重建耗时, 重建越慢、越接近过期, 提前重建的概率越大
+     */
+    private boolean shouldRefreshEarly(String Prefix, long expireTime, long now) {
+        CacheProperties.EarlyRefresh earlyRefresh = cacheProperties.getEarlyRefresh();
+        if (!earlyRefresh.isEnabled()) return false;
+        Long delta = rebuildCosts.get(Prefix);
+        // 还没有测量到重建耗时
+        if (delta == null || delta <= 0) return false;
+        double rand = 1.0 - ThreadLocalRandom.current().nextDouble(); // (0,1]
+        return -delta * earlyRefresh.getBeta() * Math.log(rand) >= expireTime - now;
+    }
+
+    // 记录重建耗时, 指数加权平均
+    private void recordRebuildCost(String Prefix, long cost) {
+        rebuildCosts.merge(Prefix, cost, (old, latest) -> (old * 7 + latest) / 8);
+    }
+
+    // 异步重建逻辑过期缓存
+    private <R,ID> void rebuildAsync(String Prefix, String key, ID id, Function<ID,R> dbCallback, Long time, TimeUnit unit) {
         // 6.缓存重建
-        // 6.1 获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLook(lockKey);
-        // 6.2 判断是否获取成功锁
-        if(isLock){
+        // 6.1 提交到重建线程池: 本JVM内已有该key的重建任务或线程池已满时, 直接返回旧数据
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+        rebuildExecutor.submit(key, () -> {
+            // 6.2 获取互斥锁, 在任务执行时才抢锁, 排队期间不占用锁
+            ILock lock = lockFactory.getLock(key);
+            if (!lock.tryLock()) {
+                // 锁在其他节点手中
+                stats.getLockContention().increment();
+                return;
+            }
+            // 6.3 获取锁成功, 查询数据库并写入缓存
+            log.debug("成功获取锁，key:{}", key);
             try {
-                log.info("成功获取锁，key-id:{}", LOCK_SHOP_KEY + id);
-                // 双重检查...
-                CACHE_REDIS_POOL.submit(() -> {
-                    try {
-                        R apply = dbCallback.apply(id);
-                        this.setWithLogicExpire(key, apply, time, unit);
-                    } catch (Exception e) {
-                        log.error("缓存重建失败", e);
-                    } finally {
-                        // ✅ 正确：在异步任务完成后释放锁
-                        unlock(lockKey);
-                        log.info("成功释放锁，key-id:{}", LOCK_SHOP_KEY + id);
-                    }
-                });
+                stats.getRebuilds().increment();
+                long begin = System.currentTimeMillis();
+                R apply = loadFromDb(stats, () -> dbCallback.apply(id));
+                if (apply == null) {
+                    // 数据库中已不存在: 删除缓存并通知其他节点, 之后按未命中返回, 不写入空数据
+                    this.delete(key);
+                } else {
+                    this.setWithLogicExpire(key, apply, time, unit);
+                }
+                recordRebuildCost(Prefix, System.currentTimeMillis() - begin);
             } catch (Exception e) {
-                // ✅ 只有任务提交失败时才在这里释放锁
-                unlock(lockKey);
-                log.error("提交重建任务失败，释放锁", e);
+                stats.getRebuildFailures().increment();
+                log.error("缓存重建失败", e);
+            } finally {
+                lock.unlock();
+                log.debug("成功释放锁，key:{}", key);
+            }
+        });
+    }
+
+    /**
+     * 同一个key的并发调用只执行一次loader, 其余线程等待并共享结果
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T singleFlight(String key, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 跟随者: 等待leader的结果
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
             }
         }
-        return bean;
+        // leader: 执行加载并发布结果
+        try {
+            T value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
     }
 
-    // 互斥锁
-    private boolean tryLook(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+    /**
+     * 批量查询-缓存穿透: 一次MGET, 未命中的id一次性查库, 再用一次pipeline写回
+     * @param dbLoader 根据一批id查询数据库, 返回 id->数据, 不存在的id不放入结果
+     * @return id->数据, 不存在的id不在结果中
+     */
+    public <R,ID> Map<ID,R> queryBatch(String Prefix, Collection<ID> ids, Class<R> type,
+                                       Function<Collection<ID>, Map<ID,R>> dbLoader, Long time, TimeUnit unit) {
+        Map<ID,R> result = new LinkedHashMap<>();
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+        // 1.去重, 布隆过滤器和本地缓存先行过滤
+        List<ID> pending = filterBatch(stats, Prefix, ids, type, result);
+        if (pending.isEmpty()) return result;
+
+        // 2.一次MGET
+        List<String> keys = new ArrayList<>(pending.size());
+        for (ID id : pending) keys.add(Prefix + id);
+        List<byte[]> values = multiGetRaw(stats, keys);
+
+        // 3.收集未命中的id, 空值视为不存在
+        List<ID> misses = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            byte[] raw = values == null ? null : values.get(i);
+            if (raw == null) {
+                stats.getMisses().increment();
+                misses.add(pending.get(i));
+            } else if (raw.length == 0) {
+                stats.getNullHits().increment();
+            } else {
+                stats.getHits().increment();
+                R r = serializer.deserialize(raw, type).getData();
+                putLocal(keys.get(i), r);
+                result.put(pending.get(i), r);
+            }
+        }
+        if (misses.isEmpty()) return result;
+
+        // 4.一次查询数据库
+        Map<ID,R> loaded = loadFromDb(stats, () -> dbLoader.apply(misses));
+
+        // 5.一次pipeline写回, 数据库中也不存在的写入空值
+        Map<String, Object> found = new LinkedHashMap<>();
+        Map<String, Object> empty = new LinkedHashMap<>();
+        for (ID id : misses) {
+            R r = loaded.get(id);
+            if (r == null) {
+                empty.put(Prefix + id, "");
+                continue;
+            }
+            found.put(Prefix + id, r);
+            result.put(id, r);
+        }
+        setBatch(found, time, unit);
+        setBatch(empty, CACHE_NULL_TTL, TimeUnit.MINUTES);
+        return result;
     }
-    // 释放锁
-    private void unlock(String key){
-        stringRedisTemplate.delete(key);
+
+    /**
+     * 批量查询-逻辑过期: 一次MGET, 已过期的数据先返回旧值, 再异步批量重建
+     * @param dbLoader 根据一批id查询数据库, 返回 id->数据
+     * @return id->数据, 缓存中不存在的id不在结果中
+     */
+    public <R,ID> Map<ID,R> queryBatchWithLogicExpire(String Prefix, Collection<ID> ids, Class<R> type,
+                                                      Function<Collection<ID>, Map<ID,R>> dbLoader, Long time, TimeUnit unit) {
+        Map<ID,R> result = new LinkedHashMap<>();
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+        // 1.去重, 布隆过滤器和本地缓存先行过滤
+        List<ID> pending = filterBatch(stats, Prefix, ids, type, result);
+        if (pending.isEmpty()) return result;
+
+        // 2.一次MGET
+        List<String> keys = new ArrayList<>(pending.size());
+        for (ID id : pending) keys.add(Prefix + id);
+        List<byte[]> values = multiGetRaw(stats, keys);
+
+        // 3.未过期直接返回, 已过期的返回旧值并记录下来
+        long now = System.currentTimeMillis();
+        Map<String, ID> expired = new LinkedHashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            byte[] raw = values == null ? null : values.get(i);
+            if (raw == null || raw.length == 0) {
+                stats.getMisses().increment();
+                continue;
+            }
+            CacheValue<R> value = serializer.deserialize(raw, type);
+            R bean = value.getData();
+            if (bean == null) continue;
+            result.put(pending.get(i), bean);
+            if (value.getExpireTime() > now) {
+                stats.getHits().increment();
+                putLocal(keys.get(i), bean);
+                continue;
+            }
+            stats.getLogicalExpiredHits().increment();
+            expired.put(keys.get(i), pending.get(i));
+        }
+        if (expired.isEmpty()) return result;
+
+        // 4.异步批量重建: 跳过本JVM内已在重建的key, 逐个抢锁, 抢到的一次查库, 一次pipeline写回
+        List<String> claimed = rebuildExecutor.claim(expired.keySet());
+        if (claimed.isEmpty()) return result;
+        List<ID> claimedIds = new ArrayList<>(claimed.size());
+        for (String key : claimed) claimedIds.add(expired.get(key));
+        // 线程池已满时不重建, 继续返回旧数据
+        rebuildExecutor.submitClaimed(claimed, () -> rebuildBatch(Prefix, claimedIds, dbLoader, time, unit));
+        return result;
+    }
+
+    private <R,ID> void rebuildBatch(String Prefix, List<ID> expired,
+                                     Function<Collection<ID>, Map<ID,R>> dbLoader, Long time, TimeUnit unit) {
+        CacheMetrics.Stats stats = cacheMetrics.of(Prefix);
+        List<ID> locked = new ArrayList<>();
+        List<ILock> locks = new ArrayList<>();
+        try {
+            for (ID id : expired) {
+                ILock lock = lockFactory.getLock(Prefix + id);
+                if (lock.tryLock()) {
+                    locked.add(id);
+                    locks.add(lock);
+                } else {
+                    stats.getLockContention().increment();
+                }
+            }
+            if (locked.isEmpty()) return;
+            stats.getRebuilds().add(locked.size());
+            Map<ID,R> loaded = loadFromDb(stats, () -> dbLoader.apply(locked));
+            Map<String, Object> values = new LinkedHashMap<>();
+            loaded.forEach((id, r) -> values.put(Prefix + id, r));
+            setBatchWithLogicExpire(values, time, unit);
+        } catch (Exception e) {
+            stats.getRebuildFailures().add(locked.size());
+            log.error("批量缓存重建失败", e);
+        } finally {
+            locks.forEach(ILock::unlock);
+        }
+    }
+
+    // 批量查询的前置过滤: 去重, 布隆过滤器拦截, 本地缓存命中的直接放入结果, 返回需要查Redis的id
+    private <R,ID> List<ID> filterBatch(CacheMetrics.Stats stats, String Prefix, Collection<ID> ids,
+                                        Class<R> type, Map<ID,R> result) {
+        List<ID> pending = new ArrayList<>();
+        for (ID id : new LinkedHashSet<>(ids)) {
+            if (!mightExist(Prefix, id)) {
+                stats.getBloomRejects().increment();
+                continue;
+            }
+            R local = getLocal(Prefix + id, type);
+            if (local != null) {
+                stats.getLocalHits().increment();
+                result.put(id, local);
+            } else {
+                pending.add(id);
+            }
+        }
+        return pending;
+    }
+
+    // 读取Redis并记录耗时
+    private byte[] getRaw(CacheMetrics.Stats stats, String key) {
+        long begin = System.nanoTime();
+        byte[] raw = cacheRedisTemplate.opsForValue().get(key);
+        stats.getRedisLatency().record(System.nanoTime() - begin);
+        return raw;
+    }
+
+    // 批量读取Redis并记录耗时
+    private List<byte[]> multiGetRaw(CacheMetrics.Stats stats, List<String> keys) {
+        long begin = System.nanoTime();
+        List<byte[]> values = cacheRedisTemplate.opsForValue().multiGet(keys);
+        stats.getRedisLatency().record(System.nanoTime() - begin);
+        return values;
+    }
+
+    // 查询数据库并记录耗时
+    private <T> T loadFromDb(CacheMetrics.Stats stats, Supplier<T> loader) {
+        long begin = System.nanoTime();
+        try {
+            return loader.get();
+        } finally {
+            stats.getDbLoadLatency().record(System.nanoTime() - begin);
+        }
+    }
+
+    // 收到其他节点的失效/新增通知
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (CACHE_BLOOM_CHANNEL.equals(channel)) {
+            // 消息体为 前缀+id, 找到对应的前缀
+            for (String prefix : bloomFilters.keySet()) {
+                if (body.startsWith(prefix)) putBloom(prefix, body.substring(prefix.length()));
+            }
+            for (String prefix : loadingBloomFilters.keySet()) {
+                if (body.startsWith(prefix)) putBloom(prefix, body.substring(prefix.length()));
+            }
+            return;
+        }
+        evictLocal(body);
+    }
+
+    // 写入已注册和加载中的布隆过滤器
+    private void putBloom(String prefix, String id) {
+        BloomFilter filter = bloomFilters.get(prefix);
+        if (filter != null) filter.put(id);
+        BloomFilter loading = loadingBloomFilters.get(prefix);
+        if (loading != null) loading.put(id);
+    }
+
+    /**
+     * 当前热点key及窗口内的估计访问次数, 按次数倒序
+     */
+    public Map<String, Long> hotKeys() {
+        return hotKeyDetector == null ? new LinkedHashMap<>() : hotKeyDetector.topKeys();
+    }
+
+    // 读取本地缓存, 同时记录一次访问用于热点探测
+    private <R> R getLocal(String key, Class<R> type) {
+        if (hotKeyDetector != null) hotKeyDetector.record(key);
+        Object value = null;
+        if (localCache != null) value = localCache.getIfPresent(key);
+        if (value == null && hotCache != null) value = hotCache.getIfPresent(key);
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    // 写入本地缓存, 热点key自动写入热点副本
+    private void putLocal(String key, Object value) {
+        if (value == null) return;
+        if (localCache != null) localCache.put(key, value);
+        if (hotCache != null && hotKeyDetector.isHot(key)) hotCache.put(key, value);
+    }
+
+    // 清理本地缓存
+    private void evictLocal(String key) {
+        if (localCache != null) localCache.invalidate(key);
+        if (hotCache != null) hotCache.invalidate(key);
     }
 }
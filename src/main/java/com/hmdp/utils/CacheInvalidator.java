@@ -0,0 +1,209 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.io.FileUtil;
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存失效管道
+ * 1. 事务提交后才删除缓存, 避免并发读在提交前把旧数据重新写回缓存
+ * 2. 多次更新的删除请求合并为一次批量删除
+ * 3. 延迟一段时间后再删一次(延迟双删), 清除提交前后并发读写回的旧值
+ * 4. 删除失败的key追加到本地文件, 定时重试, 重启后继续重试
+ * 5. 提交后的key先追加到日志文件, 两次删除都完成后才从日志中清除, 进程退出时排队和等待双删的key重启后重新删除
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private CacheProperties cacheProperties;
+
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "cache-invalidator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 已写入日志但还没有完成两次删除的key -> 未完成次数, 由 this 保护
+    private final Map<String, Integer> outstanding = new HashMap<>();
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Invalidation invalidation = cacheProperties.getInvalidation();
+        // 上次退出时未完成删除的key转入重试文件
+        recoverJournal();
+        // 批量删除线程
+        scheduler.execute(this::drainLoop);
+        // 失败重试, 并清理日志中已完成的key
+        long retryMillis = invalidation.getRetryInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            retryFailed();
+            compactJournal();
+        }, retryMillis, retryMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在当前事务提交后删除缓存, 没有事务时立即删除
+     * @param key 缓存key
+     */
+    public void invalidateAfterCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                enqueue(key);
+            }
+        });
+    }
+
+    // 先写日志再入队, 进程在删除前退出时重启后还能删除
+    private void enqueue(String key) {
+        synchronized (this) {
+            outstanding.merge(key, 1, Integer::sum);
+            FileUtil.appendUtf8Lines(Collections.singletonList(key), journalFile());
+        }
+        queue.offer(key);
+    }
+
+    // 不断取出待删除的key, 攒批后删除
+    private void drainLoop() {
+        int batchSize = cacheProperties.getInvalidation().getBatchSize();
+        while (running) {
+            try {
+                String first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                Set<String> batch = new LinkedHashSet<>();
+                batch.add(first);
+                List<String> more = new ArrayList<>();
+                queue.drainTo(more, batchSize - 1);
+                batch.addAll(more);
+                // 合并前每个key入队一次, 完成时按入队次数扣减
+                List<String> entries = new ArrayList<>(more.size() + 1);
+                entries.add(first);
+                entries.addAll(more);
+                if (delete(batch)) {
+                    // 延迟双删, 第二次删除后才算完成; 失败的key已转入重试文件
+                    long delay = cacheProperties.getInvalidation().getSecondDeleteDelay().toMillis();
+                    scheduler.schedule(() -> {
+                        delete(batch);
+                        finish(entries);
+                    }, delay, TimeUnit.MILLISECONDS);
+                } else {
+                    finish(entries);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("缓存失效处理异常", e);
+            }
+        }
+    }
+
+    // 删除一批key, 失败时写入本地重试文件
+    private boolean delete(Set<String> keys) {
+        try {
+            cacheClient.delete(keys);
+            return true;
+        } catch (Exception e) {
+            log.error("删除缓存失败, 写入重试文件, keys:{}", keys, e);
+            appendFailed(keys);
+            return false;
+        }
+    }
+
+    private synchronized void appendFailed(Set<String> keys) {
+        FileUtil.appendUtf8Lines(keys, retryFile());
+    }
+
+    // 重试文件中的key, 全部成功后清空文件
+    private synchronized void retryFailed() {
+        File file = retryFile();
+        if (!file.exists() || file.length() == 0) return;
+        Set<String> keys = new LinkedHashSet<>(FileUtil.readUtf8Lines(file));
+        keys.remove("");
+        try {
+            cacheClient.delete(keys);
+            FileUtil.writeUtf8String("", file);
+            log.info("缓存删除重试成功, 共{}个key", keys.size());
+        } catch (Exception e) {
+            log.warn("缓存删除重试失败, 稍后再试, 共{}个key", keys.size());
+        }
+    }
+
+    // 两次删除完成(或已转入重试文件), 扣减未完成次数
+    private synchronized void finish(List<String> keys) {
+        for (String key : keys) {
+            outstanding.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // 用未完成的key重写日志, 全部完成时清空
+    private synchronized void compactJournal() {
+        File file = journalFile();
+        if (file.length() == 0) return;
+        FileUtil.writeUtf8Lines(new ArrayList<>(outstanding.keySet()), file);
+    }
+
+    // 启动时日志中的key可能只删了一次或还没删, 全部转入重试文件再删一次
+    private synchronized void recoverJournal() {
+        File file = journalFile();
+        if (file.length() == 0) return;
+        Set<String> keys = new LinkedHashSet<>(FileUtil.readUtf8Lines(file));
+        keys.remove("");
+        if (!keys.isEmpty()) {
+            appendFailed(keys);
+            log.warn("上次退出时有未完成删除的缓存key, 转入重试文件, 共{}个key", keys.size());
+        }
+        FileUtil.writeUtf8String("", file);
+    }
+
+    private File retryFile() {
+        return FileUtil.touch(cacheProperties.getInvalidation().getRetryFile());
+    }
+
+    private File journalFile() {
+        return FileUtil.touch(cacheProperties.getInvalidation().getJournalFile());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        // 丢弃等待中的延迟双删任务, 它们的key仍在日志中, 重启后会再删一次
+        scheduler.shutdownNow();
+        // 队列中剩余的key和等待双删的key先删一次, 失败的会写入重试文件
+        Set<String> rest = new LinkedHashSet<>();
+        queue.drainTo(rest);
+        synchronized (this) {
+            rest.addAll(outstanding.keySet());
+        }
+        if (!rest.isEmpty()) delete(rest);
+    }
+}
@@ -0,0 +1,82 @@
+package com.hmdp.utils;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存指标, 按key前缀统计
+ * 计数使用 LongAdder, 热路径上只有一次 ConcurrentHashMap 读和一次自增
+ */
+@Component
+public class CacheMetrics {
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public Stats of(String prefix) {
+        Stats s = stats.get(prefix);
+        return s != null ? s : stats.computeIfAbsent(prefix, p -> new Stats());
+    }
+
+    /**
+     * 所有前缀的指标快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        stats.forEach((prefix, s) -> snapshot.put(prefix, s.snapshot()));
+        return snapshot;
+    }
+
+    @Getter
+    public static class Stats {
+        // 本地缓存(L1/热点副本)命中
+        private final LongAdder localHits = new LongAdder();
+        // Redis命中
+        private final LongAdder hits = new LongAdder();
+        // 命中空值
+        private final LongAdder nullHits = new LongAdder();
+        // 命中但逻辑已过期
+        private final LongAdder logicalExpiredHits = new LongAdder();
+        // 未命中
+        private final LongAdder misses = new LongAdder();
+        // 布隆过滤器拦截
+        private final LongAdder bloomRejects = new LongAdder();
+        // 重建次数与失败次数
+        private final LongAdder rebuilds = new LongAdder();
+        private final LongAdder rebuildFailures = new LongAdder();
+        // 抢锁失败(锁被其他节点持有)
+        private final LongAdder lockContention = new LongAdder();
+        // Redis读取耗时
+        private final LatencyHistogram redisLatency = new LatencyHistogram();
+        // 查询数据库耗时
+        private final LatencyHistogram dbLoadLatency = new LatencyHistogram();
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            long local = localHits.sum();
+            long hit = hits.sum();
+            long nullHit = nullHits.sum();
+            long expired = logicalExpiredHits.sum();
+            long miss = misses.sum();
+            long lookups = local + hit + nullHit + expired + miss;
+            snapshot.put("localHits", local);
+            snapshot.put("hits", hit);
+            snapshot.put("nullHits", nullHit);
+            snapshot.put("logicalExpiredHits", expired);
+            snapshot.put("misses", miss);
+            snapshot.put("hitRate", lookups == 0 ? 0 : (double) (local + hit + nullHit + expired) / lookups);
+            snapshot.put("bloomRejects", bloomRejects.sum());
+            snapshot.put("rebuilds", rebuilds.sum());
+            snapshot.put("rebuildFailures", rebuildFailures.sum());
+            snapshot.put("lockContention", lockContention.sum());
+            snapshot.put("redisLatency", redisLatency.snapshot());
+            snapshot.put("dbLoadLatency", dbLoadLatency.snapshot());
+            return snapshot;
+        }
+    }
+}
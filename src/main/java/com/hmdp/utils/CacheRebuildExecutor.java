@@ -0,0 +1,150 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存异步重建线程池, 所有缓存使用方共享
+ * 1. 有界队列, 大面积过期时不会无限堆积任务
+ * 2. 同一个key同时只有一个重建任务(在队列中或执行中), 重复提交直接忽略
+ * 3. 队列满时拒绝新任务, 调用方继续返回旧数据, 下次访问时再尝试
+ */
+@Slf4j
+@Component
+public class CacheRebuildExecutor {
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    private ThreadPoolExecutor executor;
+    // 已提交且未结束的重建key
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // 任务在队列中的等待时间和执行时间
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram runLatency = new LatencyHistogram();
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Rebuild rebuild = cacheProperties.getRebuild();
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(rebuild.getThreads(), rebuild.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(rebuild.getQueueCapacity()),
+                r -> new Thread(r, "cache-rebuild-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 提交一个key的重建任务
+     * @return 是否提交成功, 该key已在重建中或线程池已满时返回false
+     */
+    public boolean submit(String key, Runnable task) {
+        if (!pendingKeys.add(key)) {
+            deduplicated.increment();
+            return false;
+        }
+        return submitClaimed(Collections.singletonList(key), task);
+    }
+
+    /**
+     * 抢占一批key, 已在重建中的key被过滤掉
+     * 抢占成功的key必须通过 submitClaimed 提交, 任务结束或被拒绝时自动释放
+     * @return 抢占成功的key
+     */
+    public List<String> claim(Collection<String> keys) {
+        List<String> claimed = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (pendingKeys.add(key)) claimed.add(key);
+            else deduplicated.increment();
+        }
+        return claimed;
+    }
+
+    /**
+     * 提交已抢占key的重建任务
+     * @return 是否提交成功, 线程池已满时返回false
+     */
+    public boolean submitClaimed(Collection<String> keys, Runnable task) {
+        long enqueueAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long begin = System.nanoTime();
+                queueLatency.record(begin - enqueueAt);
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    failed.increment();
+                    log.error("缓存重建任务执行失败, keys:{}", keys, e);
+                } finally {
+                    runLatency.record(System.nanoTime() - begin);
+                    pendingKeys.removeAll(keys);
+                }
+            });
+            submitted.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            // 队列已满或已关闭, 释放key, 调用方继续返回旧数据
+            rejected.increment();
+            pendingKeys.removeAll(keys);
+            return false;
+        }
+    }
+
+    /**
+     * 当前队列中等待的任务数
+     */
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 线程池状态快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("queueDepth", queueDepth());
+        snapshot.put("queueCapacity", cacheProperties.getRebuild().getQueueCapacity());
+        snapshot.put("activeThreads", executor.getActiveCount());
+        snapshot.put("pendingKeys", pendingKeys.size());
+        snapshot.put("submitted", submitted.sum());
+        snapshot.put("deduplicated", deduplicated.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("failed", failed.sum());
+        snapshot.put("queueLatency", queueLatency.snapshot());
+        snapshot.put("runLatency", runLatency.snapshot());
+        return snapshot;
+    }
+
+    // 停止接收新任务, 等待已提交的任务完成
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        long timeout = cacheProperties.getRebuild().getShutdownTimeout().toMillis();
+        if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+            log.warn("缓存重建线程池关闭超时, 丢弃剩余任务:{}", executor.shutdownNow().size());
+        }
+    }
+}
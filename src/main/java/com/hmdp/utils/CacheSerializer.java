@@ -0,0 +1,24 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存值序列化扩展点, CacheClient 读写Redis时统一经过它
+ * 可以声明一个 CacheSerializer 类型的 Bean 替换默认实现
+ */
+public interface CacheSerializer {
+
+    /**
+     * 序列化
+     * @param value 要缓存的数据
+     * @param expireTime 逻辑过期时间(毫秒时间戳), 普通缓存传 -1
+     * @return 写入Redis的字节
+     */
+    byte[] serialize(Object value, long expireTime);
+
+    /**
+     * 反序列化
+     * @param bytes 从Redis读到的字节, 不为空
+     * @param type 数据类型
+     * @return 数据和逻辑过期时间
+     */
+    <R> CacheValue<R> deserialize(byte[] bytes, Class<R> type);
+}
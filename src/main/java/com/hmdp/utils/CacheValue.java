@@ -0,0 +1,22 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 反序列化后的缓存值
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheValue<R> {
+    /**
+     * 缓存的数据
+     */
+    private R data;
+    /**
+     * 逻辑过期时间(毫秒时间戳), 普通缓存为 -1
+     */
+    private long expireTime;
+}
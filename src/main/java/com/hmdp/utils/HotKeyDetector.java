@@ -0,0 +1,182 @@
+package com.hmdp.utils;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点key探测: 滑动窗口的 count-min sketch + top-K
+ * 窗口被切分为若干片, 每片一个sketch, 另有一个汇总其他各片的sketch
+ * 访问只计入当前片, 计数器为按需创建的 LongAdder, 同一个热点key的并发自增分散到多个cell, 不争抢同一个缓存行;
+ * 汇总sketch只由 rotate() 单线程更新, 估计次数 = 汇总 + 当前片
+ * 每过一片时间调用 rotate() 把刚结束的一片加入汇总, 把最旧的一片从汇总中减掉并清零, 同时重新计算 top-K 和热点集合
+ */
+public class HotKeyDetector {
+
+    private final int depth;
+    private final int width;
+    private final long threshold;
+    private final int topK;
+
+    private final AtomicReferenceArray<LongAdder>[] slices;
+    // 各片结束时转入汇总的次数, 滑出窗口时从汇总中减掉; 只由 rotate() 访问
+    private final long[][] finishedCounts;
+    // 除当前片之外各片的汇总
+    private final AtomicLongArray total;
+    private volatile int current;
+
+    // 候选key及其估计次数, 只有估计次数达到阈值一半的key才会进入
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    // 当前的热点key
+    private final Set<String> hotKeys = ConcurrentHashMap.newKeySet();
+    // 最近一次计算的 top-K, 按次数倒序
+    private volatile Map<String, Long> top = new LinkedHashMap<>();
+
+    /**
+     * @param sliceCount 窗口切片数
+     * @param width 每行计数器数量, 会向上取整为2的幂
+     * @param depth 哈希行数
+     * @param threshold 窗口内访问次数达到该值即视为热点
+     * @param topK 保留的热点数量
+     */
+    public HotKeyDetector(int sliceCount, int width, int depth, long threshold, int topK) {
+        this.width = Integer.highestOneBit(Math.max(width, 16) - 1) << 1;
+        this.depth = depth;
+        this.threshold = threshold;
+        this.topK = topK;
+        @SuppressWarnings("unchecked")
+        AtomicReferenceArray<LongAdder>[] slices = new AtomicReferenceArray[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new AtomicReferenceArray<>(this.width * depth);
+        }
+        this.slices = slices;
+        this.finishedCounts = new long[sliceCount][this.width * depth];
+        this.total = new AtomicLongArray(this.width * depth);
+    }
+
+    /**
+     * 记录一次访问
+     * @return 窗口内的估计访问次数
+     */
+    public long record(String key) {
+        AtomicReferenceArray<LongAdder> slice = slices[current];
+        int h = spread(key.hashCode());
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + indexOf(h, row);
+            LongAdder cell = cell(slice, index);
+            cell.increment();
+            min = Math.min(min, total.get(index) + cell.sum());
+        }
+        if (min >= threshold) hotKeys.add(key);
+        if (min >= threshold / 2 && candidates.size() < topK * 4) candidates.put(key, min);
+        return min;
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    // 窗口内的估计访问次数
+    public long estimate(String key) {
+        AtomicReferenceArray<LongAdder> slice = slices[current];
+        int h = spread(key.hashCode());
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + indexOf(h, row);
+            LongAdder cell = slice.get(index);
+            min = Math.min(min, total.get(index) + (cell == null ? 0 : cell.sum()));
+        }
+        return Math.max(0, min);
+    }
+
+    // 按需创建计数器, 没有访问过的cell不占内存
+    private static LongAdder cell(AtomicReferenceArray<LongAdder> slice, int index) {
+        LongAdder cell = slice.get(index);
+        if (cell != null) return cell;
+        slice.compareAndSet(index, null, new LongAdder());
+        return slice.get(index);
+    }
+
+    /**
+     * 滑动一片: 清除最旧的一片, 重新计算 top-K 和热点集合, 由单个线程定时调用
+     */
+    public void rotate() {
+        int finished = current;
+        int oldest = (current + 1) % slices.length;
+        AtomicReferenceArray<LongAdder> finishedSlice = slices[finished];
+        AtomicReferenceArray<LongAdder> oldestSlice = slices[oldest];
+        // 1.最旧的一片按当时转入的次数从汇总中减掉, 清零后作为新的当前片
+        long[] removed = finishedCounts[oldest];
+        for (int i = 0; i < removed.length; i++) {
+            if (removed[i] != 0) total.addAndGet(i, -removed[i]);
+            removed[i] = 0;
+            LongAdder cell = oldestSlice.get(i);
+            if (cell != null) cell.reset();
+        }
+        current = oldest;
+        // 2.刚结束的一片转入汇总并清零; 只有一片时窗口就是当前片, 不需要汇总
+        //   转入后才到达的少量计数(切换瞬间仍在记录的线程)直接丢弃, 汇总不会漂移
+        if (finished != oldest) {
+            long[] added = finishedCounts[finished];
+            for (int i = 0; i < added.length; i++) {
+                LongAdder cell = finishedSlice.get(i);
+                long count = cell == null ? 0 : cell.sumThenReset();
+                added[i] = count;
+                if (count != 0) total.addAndGet(i, count);
+            }
+        }
+
+        // 小顶堆保留次数最多的 topK 个
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(Comparator.<Map.Entry<String, Long>>comparingLong(Map.Entry::getValue));
+        for (String key : candidates.keySet()) {
+            long count = estimate(key);
+            if (count < threshold / 2) {
+                candidates.remove(key);
+                continue;
+            }
+            candidates.put(key, count);
+            heap.offer(new AbstractMap.SimpleEntry<>(key, count));
+            if (heap.size() > topK) candidates.remove(heap.poll().getKey());
+        }
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(heap);
+        sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> latest = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : sorted) {
+            latest.put(entry.getKey(), entry.getValue());
+        }
+        top = latest;
+        hotKeys.removeIf(key -> estimate(key) < threshold);
+    }
+
+    /**
+     * 最近一次计算的 top-K, 按访问次数倒序
+     */
+    public Map<String, Long> topKeys() {
+        return top;
+    }
+
+    private int indexOf(int h, int row) {
+        // 双重哈希得到每一行的下标
+        int h2 = (h >>> 16) | 1;
+        return (h + row * h2) & (width - 1);
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
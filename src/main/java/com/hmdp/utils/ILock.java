@@ -0,0 +1,32 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁
+ */
+public interface ILock {
+
+    /**
+     * 尝试获取锁, 不等待
+     * @return true代表获取锁成功; false代表获取锁失败
+     */
+    boolean tryLock();
+
+    /**
+     * 尝试获取锁, 最多等待 waitTime, 等待期间退避重试
+     * @return true代表获取锁成功; false代表超时
+     */
+    boolean tryLock(long waitTime, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 释放锁, 重入几次就需要释放几次
+     */
+    void unlock();
+
+    /**
+     * 当前线程持有锁时的fencing token, 每次新获取锁单调递增, 重入时不变; 未持有或不是 fenced 锁时返回-1
+     * 下游写入时携带token, 拒绝比已见过的token更小的写入, 防止锁过期后的旧持有者写入
+     */
+    long getFencingToken();
+}
@@ -0,0 +1,21 @@
+package com.hmdp.utils;
+
+/**
+ * 全局id生成器
+ * id格式: 31位时间戳(秒, 从2025-01-01起) + 32位序列号, 序列号的生成方式由实现决定
+ * 通过 hmdp.id.type 选择实现: redis(默认) 或 snowflake
+ */
+public interface IdWorker {
+
+    /**
+     * 2025-01-01 00:00:00 的秒数
+     */
+    long BEGIN_TIMESTAMP = 1735689600L;
+
+    /**
+     * 序列号位数
+     */
+    int COUNT_BITS = 32;
+
+    long nextId(String keyPrefix);
+}
@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * hutool JSON 格式, 与历史数据兼容:
+ * 普通缓存直接存数据的JSON, 逻辑过期缓存存 RedisData 的JSON
+ */
+public class JsonCacheSerializer implements CacheSerializer {
+
+    @Override
+    public byte[] serialize(Object value, long expireTime) {
+        if (expireTime < 0) return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(expireTime), ZoneId.systemDefault());
+        return JSONUtil.toJsonStr(new RedisData(time, value)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <R> CacheValue<R> deserialize(byte[] bytes, Class<R> type) {
+        JSONObject json = JSONUtil.parseObj(new String(bytes, StandardCharsets.UTF_8));
+        // 普通缓存
+        // 只按 expireTime 判断: hutool 不输出 null 字段, 数据为空的逻辑过期缓存没有 data 字段
+        if (!json.containsKey("expireTime")) {
+            return new CacheValue<>(json.toBean(type), -1);
+        }
+        // 逻辑过期缓存, 需要解析两次: 先解析 RedisData, 再解析其中的数据
+        RedisData redisData = json.toBean(RedisData.class);
+        Object data = redisData.getData();
+        R bean = data instanceof JSONObject ? ((JSONObject) data).toBean(type) : null;
+        long expireTime = redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new CacheValue<>(bean, expireTime);
+    }
+}
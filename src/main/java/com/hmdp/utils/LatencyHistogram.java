@@ -0,0 +1,69 @@
+package com.hmdp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 低开销的延迟直方图: 以微秒为单位按2的幂分桶, 每个桶一个 LongAdder
+ * 分位数取所在桶的上界, 误差不超过一倍, 用于观察量级和趋势足够
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        // 桶i 覆盖 [2^(i-1), 2^i) 微秒
+        int index = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[index].increment();
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @param quantile 分位, 例如 0.99
+     * @return 对应桶的上界(微秒)
+     */
+    public long percentileMicros(double quantile) {
+        long total = count.sum();
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= target) return 1L << i;
+        }
+        return maxMicros.get();
+    }
+
+    public Map<String, Object> snapshot() {
+        long total = count.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", total);
+        snapshot.put("avgMicros", total == 0 ? 0 : sumMicros.sum() / total);
+        snapshot.put("p50Micros", percentileMicros(0.5));
+        snapshot.put("p90Micros", percentileMicros(0.9));
+        snapshot.put("p99Micros", percentileMicros(0.99));
+        snapshot.put("p999Micros", percentileMicros(0.999));
+        snapshot.put("maxMicros", maxMicros.get());
+        return snapshot;
+    }
+}
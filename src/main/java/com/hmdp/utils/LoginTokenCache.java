@@ -0,0 +1,90 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.LoginProperties;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_TOKEN_CHANNEL;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+
+/**
+ * 登录token -> 用户 的本地缓存
+ * 用户信息登录后基本不变, 命中时不访问Redis; 登出时删除Redis中的token并通过发布订阅让所有节点失效
+ */
+@Slf4j
+@Component
+public class LoginTokenCache implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+    @Resource
+    private LoginProperties loginProperties;
+
+    // 未开启时为null
+    private Cache<String, UserDTO> cache;
+
+    @PostConstruct
+    public void init() {
+        LoginProperties.TokenCache tokenCache = loginProperties.getTokenCache();
+        if (!tokenCache.isEnabled()) return;
+        cache = Caffeine.newBuilder()
+                .maximumSize(tokenCache.getMaximumSize())
+                .expireAfterWrite(tokenCache.getTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(LOGIN_TOKEN_CHANNEL));
+    }
+
+    /**
+     * 查询token对应的用户, 本地未命中时从Redis读取
+     * @return token不存在或已过期时返回null
+     */
+    public UserDTO get(String token) {
+        if (cache == null) return load(token);
+        // 加载与invalidate对同一个token互斥, 不会把已登出的token重新写回本地缓存;
+        // load返回null时Caffeine不缓存, 不存在的token不会留下空值
+        return cache.get(token, this::load);
+    }
+
+    /**
+     * 登出: 删除Redis中的token, 并通知所有节点失效本地缓存
+     */
+    public void invalidate(String token) {
+        stringRedisTemplate.delete(LOGIN_USER_KEY + token);
+        if (cache == null) return;
+        cache.invalidate(token);
+        stringRedisTemplate.convertAndSend(LOGIN_TOKEN_CHANNEL, token);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        cache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    // HGETALL login:token:xxx, 字段均为字符串, 直接赋值, 不走反射
+    private UserDTO load(String token) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(LOGIN_USER_KEY + token);
+        if (entries.isEmpty()) return null;
+        UserDTO user = new UserDTO();
+        Object id = entries.get("id");
+        user.setId(id == null ? null : Long.valueOf(id.toString()));
+        user.setNickName((String) entries.get("nickName"));
+        user.setIcon((String) entries.get("icon"));
+        return user;
+    }
+}
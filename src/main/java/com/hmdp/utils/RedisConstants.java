@@ -6,6 +6,8 @@ public class RedisConstants {
     public static final Long LOGIN_CODE_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
     public static final Long LOGIN_USER_TTL = 36000L;
+    // 登出通知频道, 各节点失效本地token缓存
+    public static final String LOGIN_TOKEN_CHANNEL = "login:token:invalidate";
 
     public static final Long CACHE_NULL_TTL = 2L;
 
@@ -14,12 +16,47 @@ public class RedisConstants {
     public static final String CACHE_SHOP_KEY = "cache:shop:";
     public static final String CACHE_SHOP_TYPE_KEY = "cache:shop-type:";
 
+    // 本地缓存跨节点失效通知频道
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    // 布隆过滤器新增元素通知频道
+    public static final String CACHE_BLOOM_CHANNEL = "cache:bloom:add";
+
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
 
+    // 秒杀券的库存/时间窗口/已下单用户key 由 seckillKey 拼接, 带 hash tag {voucherId}
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    // 秒杀时间窗口, hash: begin/end 毫秒时间戳
+    public static final String SECKILL_TIME_KEY = "seckill:time:";
+    // 已下单用户集合, 一人一单
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    // 秒杀订单消息队列(Stream)
+    public static final String SECKILL_ORDER_STREAM_KEY = "stream.orders";
+    // 多次投递仍写库失败的订单消息(死信队列), 库存和下单资格已归还
+    public static final String SECKILL_ORDER_DLQ_KEY = "stream.orders.dlq";
+    // 分段库存的秒杀券id集合
+    public static final String SECKILL_SEGMENTED_KEY = "seckill:segmented";
+    // 秒杀券新建/修改通知频道
+    public static final String SECKILL_VOUCHER_CHANNEL = "seckill:voucher";
+    // 秒杀券售罄/补货通知频道
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:sold-out";
+    // 秒杀券补货代数, 每次补货加1, 早于它的售罄标记作废
+    public static final String SECKILL_SOLD_OUT_GEN_KEY = "seckill:sold-out:gen:";
+    // 秒杀订单状态, hash: status(pending/created/failed)/userId/voucherId
+    public static final String SECKILL_ORDER_STATUS_KEY = "seckill:status:";
+    public static final Long SECKILL_ORDER_STATUS_TTL = 1440L;
+    // 秒杀请求幂等键 -> processing(处理中) 或 订单id
+    public static final String SECKILL_IDEMPOTENCY_KEY = "seckill:idem:";
+    public static final Long SECKILL_IDEMPOTENCY_TTL = 10L;
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
+
+    /**
+     * 秒杀券的key: 前缀 + {voucherId}, 集群中同一张券的库存、时间窗口、已下单用户在同一个slot, 脚本可以一起访问
+     */
+    public static String seckillKey(String prefix, Long voucherId) {
+        return prefix + "{" + voucherId + "}";
+    }
 }
@@ -1,21 +1,50 @@
 package com.hmdp.utils;
 
+import com.hmdp.config.IdProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 全局id: 31位时间戳(秒) + 32位当天序列号
+ * 号段模式下每个节点用 INCRBY 一次申请一段序列号, 在本地无锁分配, 使用到一定比例时后台预取下一段,
+ * 大部分id的生成不访问Redis; 同一天内序列号仍然全局唯一, 但不同节点之间的id不再严格递增
+ */
 @Component
 @Slf4j
-public class RedisIdWorker {
-    private static final long BEGIN_TIMESTAMP = 1735689600L;
-    private static final int COUNT_BITS = 32;
+@ConditionalOnProperty(prefix = "hmdp.id", name = "type", havingValue = "redis", matchIfMissing = true)
+public class RedisIdWorker implements IdWorker {
+    private static final int MIN_STEP = 1000;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
     @Resource private StringRedisTemplate stringRedisTemplate;
+    @Resource private IdProperties idProperties;
+
+    // 业务前缀 -> 号段
+    private final Map<String, SegmentBuffer> buffers = new ConcurrentHashMap<>();
+    // 当天的日期字符串, 跨天时才重新格式化
+    private volatile Day today = new Day(LocalDate.MIN, "");
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "id-segment-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
 
+    @Override
     public long nextId(String keyPrefix){
         // 1.生成时间戳
         LocalDateTime now = LocalDateTime.now();
@@ -23,14 +52,37 @@ public class RedisIdWorker {
         long timestamp = nowSecond - BEGIN_TIMESTAMP;
 
         // 2.生成序列号
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
-        // 2.2.自增长
-        long count = stringRedisTemplate.opsForValue().increment("icr:" + keyPrefix + ":" + date);
+        String date = date(now.toLocalDate());
+        long count = idProperties.getSegment().isEnabled()
+                ? buffers.computeIfAbsent(keyPrefix, SegmentBuffer::new).next(date)
+                : stringRedisTemplate.opsForValue().increment(counterKey(keyPrefix, date));
 
         // 3.拼接并返回
         return timestamp << COUNT_BITS | count;
     }
 
+    private String date(LocalDate day) {
+        Day cached = today;
+        if (!cached.day.equals(day)) {
+            cached = new Day(day, day.format(DATE_FORMATTER));
+            today = cached;
+        }
+        return cached.date;
+    }
+
+    private static String counterKey(String keyPrefix, String date) {
+        return "icr:" + keyPrefix + ":" + date;
+    }
+
+    private int step() {
+        return Math.max(MIN_STEP, idProperties.getSegment().getStep());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
+
     // 生成2025-1-1 00:00:00的秒数
     public static void main(String[] args) {
         long epochSecond = LocalDateTime.of(2025, 1, 1, 0, 0, 0)
@@ -38,4 +90,101 @@ public class RedisIdWorker {
         System.out.println(epochSecond);
 
     }
+
+    private static class Day {
+        private final LocalDate day;
+        private final String date;
+
+        private Day(LocalDate day, String date) {
+            this.day = day;
+            this.date = date;
+        }
+    }
+
+    /**
+     * 一段序列号 (max - step, max], 属于某一天的计数器
+     */
+    private static class Segment {
+        private final String date;
+        private final long max;
+        private final long prefetchAt;
+        private final AtomicLong cursor;
+
+        private Segment(String date, long max, int step, double prefetchRatio) {
+            this.date = date;
+            this.max = max;
+            this.prefetchAt = max - step + Math.max(1, (long) (step * prefetchRatio));
+            this.cursor = new AtomicLong(max - step);
+        }
+    }
+
+    /**
+     * 一个业务前缀的号段: 当前号段 + 预取的下一个号段
+     */
+    private class SegmentBuffer {
+        private final String keyPrefix;
+        private volatile Segment current;
+        private volatile Segment next;
+        private final AtomicBoolean prefetching = new AtomicBoolean();
+
+        private SegmentBuffer(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        long next(String date) {
+            while (true) {
+                Segment segment = current;
+                if (segment != null && segment.date.equals(date)) {
+                    // 1.无锁分配
+                    long value = segment.cursor.incrementAndGet();
+                    if (value <= segment.max) {
+                        // 1.1 恰好到达预取点的线程触发预取, 只会触发一次
+                        if (value == segment.prefetchAt) prefetch(date);
+                        return value;
+                    }
+                }
+                // 2.号段用完或跨天, 切换号段
+                switchSegment(segment, date);
+            }
+        }
+
+        private synchronized void switchSegment(Segment exhausted, String date) {
+            // 其他线程已经切换过
+            if (current != exhausted) return;
+            Segment prefetched = next;
+            next = null;
+            current = prefetched != null && prefetched.date.equals(date) ? prefetched : allocate(date);
+        }
+
+        private void prefetch(String date) {
+            if (!prefetching.compareAndSet(false, true)) return;
+            try {
+                prefetchExecutor.execute(() -> {
+                    try {
+                        Segment segment = allocate(date);
+                        synchronized (this) {
+                            if (next == null) next = segment;
+                        }
+                    } catch (Exception e) {
+                        // 预取失败不影响当前号段, 用完时同步申请
+                        log.error("预取id号段失败, keyPrefix:{}", keyPrefix, e);
+                    } finally {
+                        prefetching.set(false);
+                    }
+                });
+            } catch (Exception e) {
+                prefetching.set(false);
+            }
+        }
+
+        // INCRBY icr:前缀:日期 step, 返回值为号段的最大值
+        private Segment allocate(String date) {
+            int step = step();
+            Long max = stringRedisTemplate.opsForValue().increment(counterKey(keyPrefix, date), step);
+            if (max == null) {
+                throw new IllegalStateException("申请id号段失败: " + keyPrefix);
+            }
+            return new Segment(date, max, step, idProperties.getSegment().getPrefetchRatio());
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的可重入分布式锁, 由 RedisLockFactory 创建
+ * 加锁、释放、续期都通过Lua脚本原子执行, 只有持有者才能释放和续期
+ */
+public class RedisLock implements ILock {
+
+    // 等待锁时的退避区间(毫秒)
+    private static final long MIN_BACKOFF = 10;
+    private static final long MAX_BACKOFF = 200;
+
+    private final RedisLockFactory factory;
+    private final String lockKey;
+    // fencing token计数器, 为空时不生成token
+    private final String fenceKey;
+    private final long leaseMillis;
+    private final long fenceTtlMillis;
+
+    RedisLock(RedisLockFactory factory, String lockKey, String fenceKey, long leaseMillis, long fenceTtlMillis) {
+        this.factory = factory;
+        this.lockKey = lockKey;
+        this.fenceKey = fenceKey;
+        this.leaseMillis = leaseMillis;
+        this.fenceTtlMillis = fenceTtlMillis;
+    }
+
+    @Override
+    public boolean tryLock() {
+        String owner = RedisLockFactory.currentOwner();
+        List<String> keys = fenceKey == null ? Collections.singletonList(lockKey) : Arrays.asList(lockKey, fenceKey);
+        Long token = factory.stringRedisTemplate.execute(RedisLockFactory.LOCK_SCRIPT,
+                keys, owner, String.valueOf(leaseMillis), String.valueOf(fenceTtlMillis));
+        if (token == null || token < 0) return false;
+        if (token == 0) {
+            // 重入
+            RedisLockFactory.Lease lease = factory.lease(lockKey, owner);
+            if (lease != null) {
+                lease.holds++;
+                return true;
+            }
+            // 本地没有租约(已被看门狗判定丢失), Redis中却仍是自己持有, 没有可用的token, 视为失败
+            release(owner);
+            return false;
+        }
+        factory.acquired(lockKey, owner, token, leaseMillis);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        long backoff = MIN_BACKOFF;
+        while (true) {
+            if (tryLock()) return true;
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) return false;
+            // 指数退避 + 随机抖动, 避免多个等待者同时重试
+            long sleep = Math.min(remaining, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            Thread.sleep(sleep);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+    }
+
+    @Override
+    public void unlock() {
+        String owner = RedisLockFactory.currentOwner();
+        RedisLockFactory.Lease lease = factory.lease(lockKey, owner);
+        if (lease != null && --lease.holds > 0) {
+            // 重入次数未归零, 只减少Redis中的计数
+            release(owner);
+            return;
+        }
+        factory.released(lockKey, owner);
+        release(owner);
+    }
+
+    @Override
+    public long getFencingToken() {
+        if (fenceKey == null) return -1;
+        RedisLockFactory.Lease lease = factory.lease(lockKey, RedisLockFactory.currentOwner());
+        return lease == null ? -1 : lease.token;
+    }
+
+    private void release(String owner) {
+        factory.stringRedisTemplate.execute(RedisLockFactory.UNLOCK_SCRIPT,
+                Collections.singletonList(lockKey), owner, String.valueOf(leaseMillis));
+    }
+}
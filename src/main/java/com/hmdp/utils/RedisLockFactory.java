@@ -0,0 +1,139 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis分布式锁工厂
+ * 锁为hash结构(持有者 -> 重入次数), 持有者为 节点id-线程id, 支持重入;
+ * 持有期间看门狗每 租期/3 续期一次, 持有者宕机后锁在租期后自动过期
+ * fencing token 只在 getFencedLock 获取的锁上生成, 计数器每次加1时刷新过期时间, 长期不用的计数器自动清除
+ */
+@Slf4j
+@Component
+public class RedisLockFactory {
+
+    private static final String KEY_PREFIX = "lock:";
+    // 节点id, 区分不同JVM中id相同的线程
+    private static final String ID_PREFIX = UUID.randomUUID().toString(true) + "-";
+    private static final long DEFAULT_LEASE_MILLIS = 30000;
+    // fencing token计数器的过期时间, 远大于租期, 过期后重新从1开始
+    private static final long FENCE_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    static final DefaultRedisScript<Long> LOCK_SCRIPT = script("lock.lua");
+    static final DefaultRedisScript<Long> UNLOCK_SCRIPT = script("unlock.lua");
+    static final DefaultRedisScript<Long> RENEW_SCRIPT = script("lock_renew.lua");
+
+    private static DefaultRedisScript<Long> script(String location) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(location));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    @Resource
+    StringRedisTemplate stringRedisTemplate;
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 本节点持有中的锁: 锁key:持有者 -> 租约
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    static class Lease {
+        final long token;
+        int holds = 1;
+        ScheduledFuture<?> renewal;
+
+        Lease(long token) {
+            this.token = token;
+        }
+    }
+
+    /**
+     * 获取锁对象, 默认租期30秒
+     * @param name 锁名称, 如 cache:shop:1
+     */
+    public ILock getLock(String name) {
+        return getLock(name, DEFAULT_LEASE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public ILock getLock(String name, long leaseTime, TimeUnit unit) {
+        return new RedisLock(this, lockKey(name), null, unit.toMillis(leaseTime), 0);
+    }
+
+    /**
+     * 获取带fencing token的锁, 下游需要校验token时使用
+     * @param name 锁名称
+     */
+    public ILock getFencedLock(String name, long leaseTime, TimeUnit unit) {
+        // 锁key和fencing计数器使用相同的hash tag, 在集群中位于同一个slot
+        String lockKey = lockKey(name);
+        return new RedisLock(this, lockKey, lockKey + ":fence", unit.toMillis(leaseTime), FENCE_TTL_MILLIS);
+    }
+
+    private static String lockKey(String name) {
+        return KEY_PREFIX + "{" + name + "}";
+    }
+
+    static String currentOwner() {
+        return ID_PREFIX + Thread.currentThread().getId();
+    }
+
+    Lease lease(String lockKey, String owner) {
+        return leases.get(lockKey + ":" + owner);
+    }
+
+    // 新获取锁: 记录租约并开始续期
+    void acquired(String lockKey, String owner, long token, long leaseMillis) {
+        String leaseKey = lockKey + ":" + owner;
+        Lease lease = new Lease(token);
+        long period = Math.max(1, leaseMillis / 3);
+        lease.renewal = watchdog.scheduleAtFixedRate(() -> renew(leaseKey, lockKey, owner, leaseMillis),
+                period, period, TimeUnit.MILLISECONDS);
+        leases.put(leaseKey, lease);
+    }
+
+    // 完全释放或失去锁: 停止续期
+    void released(String lockKey, String owner) {
+        Lease lease = leases.remove(lockKey + ":" + owner);
+        if (lease != null) lease.renewal.cancel(false);
+    }
+
+    private void renew(String leaseKey, String lockKey, String owner, long leaseMillis) {
+        try {
+            Long r = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lockKey),
+                    owner, String.valueOf(leaseMillis));
+            if (r == null || r == 0) {
+                // 锁已过期或被删除, 不再续期
+                log.warn("锁已丢失, 停止续期:{}", lockKey);
+                Lease lease = leases.remove(leaseKey);
+                if (lease != null) lease.renewal.cancel(false);
+            }
+        } catch (Exception e) {
+            // Redis暂时不可用, 下个周期再试, 租期内恢复即可
+            log.error("锁续期失败:{}", lockKey, e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+}
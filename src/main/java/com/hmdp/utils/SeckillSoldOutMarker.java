@@ -0,0 +1,118 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_GEN_KEY;
+
+/**
+ * 秒杀券本地售罄标记
+ * 售罄后本节点直接拒绝请求, 不再访问Redis; 售罄和补货通过发布订阅同步到所有节点
+ * 每次补货在Redis中把补货代数加1, 售罄标记带上判断库存前观察到的代数, 早于最新补货的售罄标记一律丢弃,
+ * 消息乱序(补货通知先于售罄通知到达)时也不会误标记
+ * 消息体: +voucherId:代数 售罄, -voucherId:代数 补货
+ */
+@Slf4j
+@Component
+public class SeckillSoldOutMarker implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    // 已售罄的优惠券 -> 标记时的补货代数
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+    // 本节点已知的最新补货代数
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    /**
+     * 本节点是否已标记售罄
+     */
+    public boolean isSoldOut(Long voucherId) {
+        return soldOut.containsKey(voucherId);
+    }
+
+    /**
+     * 当前的补货代数, 在判断库存之前获取, 标记售罄时传回
+     * 本节点第一次使用该优惠券时从Redis读取, 之后由补货通知更新
+     */
+    public long generation(Long voucherId) {
+        return generations.computeIfAbsent(voucherId, id -> {
+            String gen = stringRedisTemplate.opsForValue().get(SECKILL_SOLD_OUT_GEN_KEY + id);
+            return gen == null ? 0L : Long.parseLong(gen);
+        });
+    }
+
+    /**
+     * 标记售罄并通知其他节点
+     * @param generation 判断库存前获取的补货代数, 期间发生过补货则忽略
+     */
+    public void markSoldOut(Long voucherId, long generation) {
+        if (!markLocal(voucherId, generation)) return;
+        stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, "+" + voucherId + ":" + generation);
+    }
+
+    /**
+     * 补货后清除售罄标记并通知其他节点
+     */
+    public void reset(Long voucherId) {
+        Long generation = stringRedisTemplate.opsForValue().increment(SECKILL_SOLD_OUT_GEN_KEY + voucherId);
+        if (generation == null) return;
+        resetLocal(voucherId, generation);
+        stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, "-" + voucherId + ":" + generation);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            int sep = body.indexOf(':');
+            Long voucherId = Long.valueOf(body.substring(1, sep));
+            long generation = Long.parseLong(body.substring(sep + 1));
+            if (body.charAt(0) == '+') markLocal(voucherId, generation);
+            else resetLocal(voucherId, generation);
+        } catch (RuntimeException e) {
+            log.warn("无法解析售罄消息:{}", body);
+        }
+    }
+
+    // 已经标记过或标记的代数早于最新补货时返回false
+    private boolean markLocal(Long voucherId, long generation) {
+        boolean[] marked = {false};
+        generations.compute(voucherId, (id, current) -> {
+            if (current != null && generation < current) return current;
+            // 其他节点的代数更新, 说明本节点错过了补货通知
+            if (current == null || generation > current) soldOut.remove(id);
+            marked[0] = soldOut.putIfAbsent(id, generation) == null;
+            return generation;
+        });
+        return marked[0];
+    }
+
+    private void resetLocal(Long voucherId, long generation) {
+        generations.compute(voucherId, (id, current) -> {
+            if (current != null && generation < current) return current;
+            // 只清除早于本次补货的售罄标记
+            soldOut.computeIfPresent(id, (k, markedAt) -> markedAt < generation ? null : markedAt);
+            return generation;
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.hmdp.utils;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SEGMENTED_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_TIME_KEY;
+import static com.hmdp.utils.RedisConstants.seckillKey;
+
+/**
+ * 秒杀券分段库存
+ * 库存拆分到 seckill:stock:{voucherId:i} 多个key, 每个分段的hash tag不同, 在集群中分布到不同的slot,
+ * 扣减时随机选一个分段, 为空时依次尝试其他分段, 单个热点券的扣减不再集中在一个slot上
+ */
+@Component
+public class SeckillStockBuckets {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private static final DefaultRedisScript<Long> DECR_SCRIPT;
+    static {
+        DECR_SCRIPT = new DefaultRedisScript<>();
+        DECR_SCRIPT.setLocation(new ClassPathResource("stock_bucket_decr.lua"));
+        DECR_SCRIPT.setResultType(Long.class);
+    }
+
+    public static String bucketKey(Long voucherId, int index) {
+        return SECKILL_STOCK_KEY + "{" + voucherId + ":" + index + "}";
+    }
+
+    /**
+     * 查询分段数, 未分段时返回0
+     */
+    public int segments(Long voucherId) {
+        Object segments = stringRedisTemplate.opsForHash().get(seckillKey(SECKILL_TIME_KEY, voucherId), "segments");
+        return segments == null ? 0 : Integer.parseInt(segments.toString());
+    }
+
+    /**
+     * 初始化分段库存, 库存尽量平均分配, 余数分给前几个分段
+     */
+    public void init(Long voucherId, int stock, int segments) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = 0; i < segments; i++) {
+                conn.set(bucketKey(voucherId, i), String.valueOf(share(stock, segments, i)));
+            }
+            conn.sAdd(SECKILL_SEGMENTED_KEY, voucherId.toString());
+            return null;
+        });
+    }
+
+    /**
+     * 扣减一个单位库存
+     * @return 扣减成功的分段下标, 所有分段都为空时返回-1
+     */
+    public int decrement(Long voucherId, int segments) {
+        int start = ThreadLocalRandom.current().nextInt(segments);
+        for (int i = 0; i < segments; i++) {
+            int index = (start + i) % segments;
+            Long r = stringRedisTemplate.execute(DECR_SCRIPT, Collections.singletonList(bucketKey(voucherId, index)));
+            if (r != null && r == 1) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * 归还库存到指定分段
+     */
+    public void increment(Long voucherId, int index, long amount) {
+        stringRedisTemplate.opsForValue().increment(bucketKey(voucherId, index), amount);
+    }
+
+    /**
+     * 补货, 平均分配到各分段
+     */
+    public void add(Long voucherId, int segments, int amount) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = 0; i < segments; i++) {
+                int share = share(amount, segments, i);
+                if (share > 0) conn.incrBy(bucketKey(voucherId, i), share);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 各分段剩余库存之和
+     */
+    public long sum(Long voucherId, int segments) {
+        List<String> keys = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) keys.add(bucketKey(voucherId, i));
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        long sum = 0;
+        if (values == null) return sum;
+        for (String value : values) {
+            if (value != null) sum += Math.max(0, Long.parseLong(value));
+        }
+        return sum;
+    }
+
+    // 第index个分段分到的数量
+    private static int share(int total, int segments, int index) {
+        return total / segments + (index < total % segments ? 1 : 0);
+    }
+}
@@ -0,0 +1,48 @@
+package com.hmdp.utils;
+
+import com.hmdp.service.IVoucherService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Set;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SEGMENTED_KEY;
+
+/**
+ * 分段库存定时对账, 把各分段剩余库存之和写回 tb_seckill_voucher.stock
+ */
+@Slf4j
+@Component
+public class SeckillStockReconciler {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private IVoucherService voucherService;
+    @Resource
+    private RedisLockFactory lockFactory;
+
+    @Scheduled(fixedDelayString = "${hmdp.seckill.reconcile-interval:60000}",
+            initialDelayString = "${hmdp.seckill.reconcile-interval:60000}")
+    public void reconcileAll() {
+        // 同一时刻只有一个节点对账
+        ILock lock = lockFactory.getLock("job:seckill-reconcile");
+        if (!lock.tryLock()) return;
+        try {
+            Set<String> ids = stringRedisTemplate.opsForSet().members(SECKILL_SEGMENTED_KEY);
+            if (ids == null || ids.isEmpty()) return;
+            for (String id : ids) {
+                try {
+                    voucherService.reconcileSegmentedStock(Long.valueOf(id));
+                } catch (Exception e) {
+                    log.error("分段库存对账失败, voucherId:{}", id, e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
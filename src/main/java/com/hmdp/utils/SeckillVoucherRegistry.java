@@ -0,0 +1,200 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.service.ISeckillVoucherService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_TIME_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_VOUCHER_CHANNEL;
+import static com.hmdp.utils.RedisConstants.seckillKey;
+
+/**
+ * 秒杀券本地注册表
+ * 每个节点在内存中保存秒杀券的时间窗口和分段数, 秒杀时判断时间窗口不需要任何I/O
+ * 秒杀券创建时写入Redis并通过发布订阅通知所有节点刷新, 启动时加载所有未结束的秒杀券
+ */
+@Slf4j
+@Component
+public class SeckillVoucherRegistry implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private SeckillStockBuckets stockBuckets;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final Map<Long, SeckillWindow> vouchers = new ConcurrentHashMap<>();
+    // 不存在的秒杀券, 短时间内不再查询Redis和数据库, 防止用不存在的id反复请求打到数据库
+    private final Cache<Long, Boolean> missing = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.SECONDS)
+            .build();
+
+    @Data
+    @AllArgsConstructor
+    public static class SeckillWindow {
+        /**
+         * 开始时间(毫秒)
+         */
+        private long begin;
+        /**
+         * 结束时间(毫秒)
+         */
+        private long end;
+        /**
+         * 库存分段数, 未分段为0
+         */
+        private int segments;
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(SECKILL_VOUCHER_CHANNEL));
+    }
+
+    // 启动时加载所有未结束的秒杀券
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActive() {
+        List<SeckillVoucher> active = seckillVoucherService.query()
+                .gt("end_time", LocalDateTime.now())
+                .list();
+        for (SeckillVoucher voucher : active) {
+            try {
+                load(voucher.getVoucherId(), voucher);
+            } catch (Exception e) {
+                log.error("加载秒杀券失败, voucherId:{}", voucher.getVoucherId(), e);
+            }
+        }
+        log.info("秒杀券注册表加载完成, size:{}", vouchers.size());
+    }
+
+    /**
+     * 本地查询, 不访问Redis
+     */
+    public SeckillWindow get(Long voucherId) {
+        return vouchers.get(voucherId);
+    }
+
+    /**
+     * 从Redis加载, Redis中没有时从数据库加载并写入Redis
+     * 不存在的结果在本地缓存5秒, 期间新建的秒杀券通过 register 或通知清除
+     * @return 秒杀券不存在时返回null
+     */
+    public SeckillWindow load(Long voucherId) {
+        if (missing.getIfPresent(voucherId) != null) return null;
+        SeckillWindow window = load(voucherId, null);
+        if (window == null) missing.put(voucherId, Boolean.TRUE);
+        return window;
+    }
+
+    private SeckillWindow load(Long voucherId, SeckillVoucher voucher) {
+        // 1.Redis中已有, 直接使用(包含分段数)
+        SeckillWindow window = readFromRedis(voucherId);
+        if (window != null) {
+            vouchers.put(voucherId, window);
+            return window;
+        }
+        // 2.从数据库加载
+        if (voucher == null) voucher = seckillVoucherService.getById(voucherId);
+        if (voucher == null) return null;
+        if (voucher.getSegments() != null && voucher.getSegments() > 1) {
+            // 2.1 分段库存的数据库库存只在对账时同步, 比实际剩余库存多, 用它重建会超卖; 需要人工核对后重新写入Redis
+            log.error("分段库存的秒杀券在Redis中的数据已丢失, 拒绝从数据库加载, voucherId:{}", voucherId);
+            return null;
+        }
+        window = new SeckillWindow(toEpochMilli(voucher.getBeginTime()), toEpochMilli(voucher.getEndTime()), 0);
+        // 3.写入Redis, 库存只在不存在时写入, 避免覆盖已扣减的库存
+        stringRedisTemplate.opsForValue().setIfAbsent(seckillKey(SECKILL_STOCK_KEY, voucherId), voucher.getStock().toString());
+        stringRedisTemplate.opsForHash().putAll(seckillKey(SECKILL_TIME_KEY, voucherId), toHash(window));
+        vouchers.put(voucherId, window);
+        return window;
+    }
+
+    /**
+     * 新建秒杀券: 写入库存和时间窗口, 并通知所有节点刷新
+     * @param segments 库存分段数, 小于等于1时不分段
+     */
+    public void register(SeckillVoucher voucher, int segments) {
+        Long voucherId = voucher.getVoucherId();
+        SeckillWindow window = new SeckillWindow(toEpochMilli(voucher.getBeginTime()),
+                toEpochMilli(voucher.getEndTime()), segments > 1 ? segments : 0);
+        // 1.先写库存, 再写时间窗口, 时间窗口存在即表示已加载
+        if (segments > 1) {
+            stockBuckets.init(voucherId, voucher.getStock(), segments);
+        } else {
+            stringRedisTemplate.opsForValue().set(seckillKey(SECKILL_STOCK_KEY, voucherId), voucher.getStock().toString());
+        }
+        stringRedisTemplate.opsForHash().putAll(seckillKey(SECKILL_TIME_KEY, voucherId), toHash(window));
+        // 2.本地注册并通知其他节点
+        vouchers.put(voucherId, window);
+        missing.invalidate(voucherId);
+        stringRedisTemplate.convertAndSend(SECKILL_VOUCHER_CHANNEL, voucherId.toString());
+    }
+
+    // 其他节点新建或修改了秒杀券, 从Redis重新读取
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            Long voucherId = Long.valueOf(body);
+            SeckillWindow window = readFromRedis(voucherId);
+            if (window != null) {
+                vouchers.put(voucherId, window);
+                missing.invalidate(voucherId);
+            } else {
+                vouchers.remove(voucherId);
+            }
+        } catch (Exception e) {
+            log.error("刷新秒杀券失败:{}", body, e);
+        }
+    }
+
+    private SeckillWindow readFromRedis(Long voucherId) {
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(seckillKey(SECKILL_TIME_KEY, voucherId));
+        Object begin = hash.get("begin");
+        Object end = hash.get("end");
+        if (begin == null || end == null) return null;
+        Object segments = hash.get("segments");
+        return new SeckillWindow(Long.parseLong(begin.toString()), Long.parseLong(end.toString()),
+                segments == null ? 0 : Integer.parseInt(segments.toString()));
+    }
+
+    private static Map<String, String> toHash(SeckillWindow window) {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("begin", String.valueOf(window.getBegin()));
+        hash.put("end", String.valueOf(window.getEnd()));
+        if (window.getSegments() > 1) hash.put("segments", String.valueOf(window.getSegments()));
+        return hash;
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
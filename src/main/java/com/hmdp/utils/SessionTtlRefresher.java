@@ -0,0 +1,111 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.LoginProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+
+/**
+ * 登录有效期的滑动刷新
+ * 1. 节流: 本节点距上次刷新不足 有效期*fraction 时跳过, 同一个token在这段时间内只刷新一次
+ * 2. 合并: 需要刷新的token先放入待刷新集合, 每隔 flush-interval 用一次pipeline批量EXPIRE
+ */
+@Slf4j
+@Component
+public class SessionTtlRefresher {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private LoginProperties loginProperties;
+
+    // token -> 上次刷新时间, 写入超过刷新间隔后自动过期, 存在即表示不需要刷新
+    private Cache<String, Long> refreshed;
+    // 待刷新的token
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        LoginProperties.Refresh refresh = loginProperties.getRefresh();
+        if (!refresh.isEnabled()) return;
+        long intervalMillis = (long) (TimeUnit.MINUTES.toMillis(LOGIN_USER_TTL) * refresh.getFraction());
+        refreshed = Caffeine.newBuilder()
+                .maximumSize(refresh.getMaximumSize())
+                .expireAfterWrite(Math.max(1, intervalMillis), TimeUnit.MILLISECONDS)
+                .build();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-ttl-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        long flushMillis = Math.max(1, refresh.getFlushInterval().toMillis());
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 请求到达时调用, 需要刷新时放入待刷新集合, 不访问Redis
+     */
+    public void touch(String token) {
+        if (refreshed == null) {
+            // 未开启节流, 每次都刷新
+            stringRedisTemplate.expire(LOGIN_USER_KEY + token, LOGIN_USER_TTL, TimeUnit.MINUTES);
+            return;
+        }
+        // 只有第一个放入成功的线程登记刷新
+        if (refreshed.asMap().putIfAbsent(token, System.currentTimeMillis()) == null) {
+            pending.add(token);
+        }
+    }
+
+    // 取出所有待刷新的token, 一次pipeline发送
+    private void flush() {
+        if (pending.isEmpty()) return;
+        List<String> tokens = new ArrayList<>(pending.size());
+        for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+            tokens.add(it.next());
+            it.remove();
+        }
+        long ttl = TimeUnit.MINUTES.toSeconds(LOGIN_USER_TTL);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String token : tokens) {
+                    conn.expire(LOGIN_USER_KEY + token, ttl);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // 刷新失败, 清除刷新记录, 下次请求时重新登记
+            refreshed.invalidateAll(tokens);
+            log.error("刷新登录有效期失败, size:{}", tokens.size(), e);
+        }
+    }
+
+    // 发送剩余的刷新
+    @PreDestroy
+    public void destroy() {
+        if (flusher == null) return;
+        flusher.shutdown();
+        flush();
+    }
+}
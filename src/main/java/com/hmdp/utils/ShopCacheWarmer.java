@@ -0,0 +1,176 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TTL;
+
+/**
+ * 商铺缓存预热
+ * 启动时按id分段并行加载 tb_shop 写入逻辑过期缓存, 之后定时刷新最热门的商铺
+ * 预热在 ApplicationRunner 中同步执行, 完成前应用的就绪状态(ReadinessState)保持 REFUSING_TRAFFIC
+ */
+@Slf4j
+@Component
+public class ShopCacheWarmer implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private CacheProperties cacheProperties;
+
+    // 预热进度
+    private volatile String state = "NOT_STARTED";
+    private final AtomicInteger totalPages = new AtomicInteger();
+    private final AtomicInteger finishedPages = new AtomicInteger();
+    private final AtomicInteger failedPages = new AtomicInteger();
+    private final AtomicLong loadedShops = new AtomicLong();
+    private volatile long beginTime;
+    private volatile long endTime;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        CacheProperties.Warmup warmup = cacheProperties.getWarmup();
+        if (!warmup.isEnabled()) {
+            state = "DISABLED";
+            return;
+        }
+        warmAll(warmup);
+    }
+
+    /**
+     * 全量预热: 按主键游标(id > 上一页最后一个id)只查询id划分出每页的id区间, 各页按区间并行加载,
+     * 不使用 OFFSET 分页, 页数多时也不会越翻越慢, 并发数受 concurrency 限制, 保护数据库
+     */
+    private void warmAll(CacheProperties.Warmup warmup) {
+        state = "RUNNING";
+        beginTime = System.currentTimeMillis();
+        int pageSize = warmup.getPageSize();
+        int total = shopService.count();
+        int pages = (total + pageSize - 1) / pageSize;
+        totalPages.set(pages);
+        log.info("商铺缓存预热开始, 共{}条, {}页", total, pages);
+
+        ExecutorService pool = Executors.newFixedThreadPool(warmup.getConcurrency());
+        try {
+            List<Future<?>> futures = new ArrayList<>(pages);
+            long lastId = 0;
+            for (int current = 1; ; current++) {
+                // 1.只查询下一页的id, 走主键索引
+                List<Object> ids = shopService.listObjs(new QueryWrapper<Shop>()
+                        .select("id").gt("id", lastId).orderByAsc("id").last("limit " + pageSize));
+                if (ids.isEmpty()) break;
+                long first = Long.parseLong(ids.get(0).toString());
+                lastId = Long.parseLong(ids.get(ids.size() - 1).toString());
+                // 2.按id区间并行加载
+                int page = current;
+                long last = lastId;
+                futures.add(pool.submit(() -> warmPage(page, first, last)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            log.error("商铺缓存预热中断", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        endTime = System.currentTimeMillis();
+        state = failedPages.get() == 0 ? "FINISHED" : "FINISHED_WITH_ERRORS";
+        log.info("商铺缓存预热结束, 写入{}条, 失败{}页, 耗时{}ms", loadedShops.get(), failedPages.get(), endTime - beginTime);
+    }
+
+    // 预热一页: 按id区间一次查询, 一次pipeline写入
+    private void warmPage(int current, long firstId, long lastId) {
+        try {
+            List<Shop> shops = shopService.query().between("id", firstId, lastId).list();
+            writeShops(shops);
+            loadedShops.addAndGet(shops.size());
+        } catch (Exception e) {
+            failedPages.incrementAndGet();
+            log.error("商铺缓存预热失败, 页码:{}", current, e);
+        } finally {
+            finishedPages.incrementAndGet();
+        }
+    }
+
+    /**
+     * 定时刷新最热门的商铺(热点探测结果优先, 其次按销量), 避免热点key逻辑过期后集中重建
+     */
+    @Scheduled(fixedDelayString = "#{@cacheProperties.warmup.hotInterval.toMillis()}",
+            initialDelayString = "#{@cacheProperties.warmup.hotInterval.toMillis()}")
+    public void warmHotShops() {
+        CacheProperties.Warmup warmup = cacheProperties.getWarmup();
+        if (!warmup.isEnabled() || warmup.getHotTopN() <= 0) return;
+        try {
+            // 1.优先刷新探测到的热点商铺
+            List<Long> hotIds = new ArrayList<>();
+            for (String key : cacheClient.hotKeys().keySet()) {
+                if (hotIds.size() >= warmup.getHotTopN()) break;
+                if (key.startsWith(CACHE_SHOP_KEY)) hotIds.add(Long.valueOf(key.substring(CACHE_SHOP_KEY.length())));
+            }
+            List<Shop> shops = hotIds.isEmpty() ? new ArrayList<>() : new ArrayList<>(shopService.listByIds(hotIds));
+            // 2.不足的按销量补齐
+            int remaining = warmup.getHotTopN() - shops.size();
+            if (remaining > 0) {
+                shops.addAll(shopService.query()
+                        .notIn(!hotIds.isEmpty(), "id", hotIds)
+                        .orderByDesc("sold")
+                        .page(new Page<>(1, remaining, false))
+                        .getRecords());
+            }
+            writeShops(shops);
+            log.debug("热门商铺缓存刷新完成, 共{}条", shops.size());
+        } catch (Exception e) {
+            log.error("热门商铺缓存刷新失败", e);
+        }
+    }
+
+    private void writeShops(List<Shop> shops) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Shop shop : shops) {
+            values.put(CACHE_SHOP_KEY + shop.getId(), shop);
+        }
+        cacheClient.setBatchWithLogicExpire(values, CACHE_SHOP_TTL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 预热进度
+     */
+    public Map<String, Object> progress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("state", state);
+        progress.put("totalPages", totalPages.get());
+        progress.put("finishedPages", finishedPages.get());
+        progress.put("failedPages", failedPages.get());
+        progress.put("loadedShops", loadedShops.get());
+        if (beginTime > 0) {
+            long end = endTime > 0 ? endTime : System.currentTimeMillis();
+            progress.put("elapsedMillis", end - beginTime);
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,199 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import com.hmdp.config.IdProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花算法id, 生成时不访问网络
+ * 高31位与 RedisIdWorker 相同, 为从2025-01-01起的秒数; 低32位:
+ * 1位标记(固定为1, 与Redis计数器的序列号区分) + 10位毫秒(0~999) + 9位worker id + 12位毫秒内序列号
+ * worker id 启动时从Redis租用并定时续期, 租约中记录该worker id已使用到的时间戳, 下一个持有者从该时间之后开始生成
+ * 时钟回拨在 max-backward 范围内时继续使用上一个时间戳(序列号用完时借用下一毫秒), 超过时拒绝生成
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "hmdp.id", name = "type", havingValue = "snowflake")
+public class SnowflakeIdWorker implements IdWorker {
+
+    private static final long EPOCH_MILLIS = BEGIN_TIMESTAMP * 1000;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int WORKER_BITS = 9;
+    private static final int MILLIS_BITS = 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_WORKERS = 1 << WORKER_BITS;
+    private static final long SNOWFLAKE_FLAG = 1L << (SEQUENCE_BITS + WORKER_BITS + MILLIS_BITS);
+
+    // worker id租约, hash tag 保证集群中与时间戳记录在同一个slot
+    private static final String WORKER_KEY = "{id:worker}:";
+    private static final String WORKER_LAST_KEY = "{id:worker}:last";
+
+    private static final DefaultRedisScript<Long> LEASE_SCRIPT;
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT;
+    static {
+        LEASE_SCRIPT = new DefaultRedisScript<>();
+        LEASE_SCRIPT.setLocation(new ClassPathResource("id_worker_lease.lua"));
+        LEASE_SCRIPT.setResultType(Long.class);
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("id_worker_renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+        RELEASE_SCRIPT = new DefaultRedisScript<>();
+        RELEASE_SCRIPT.setLocation(new ClassPathResource("id_worker_release.lua"));
+        RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private IdProperties idProperties;
+
+    private final String owner = UUID.randomUUID().toString(true);
+    // worker id、已使用到的毫秒(从2025-01-01起)和该毫秒内已使用的序列号, 作为一个不可变快照整体CAS替换,
+    // 生成id时读到的worker id和序列号一定属于同一个状态; 租到新的worker id时序列号重新开始
+    private final AtomicReference<State> state = new AtomicReference<>(new State(-1, 0, SEQUENCE_MASK));
+    // 租约本地过期时间, 超过后不再生成id, 避免与接手该worker id的节点重复
+    private volatile long leaseDeadline;
+    private long leaseTtlMillis;
+    private long maxBackwardMillis;
+    // 时钟, 测试时替换以模拟时钟回拨
+    LongSupplier clock = System::currentTimeMillis;
+    private ScheduledExecutorService heartbeat;
+
+    private static final class State {
+        final int workerId;
+        final long millis;
+        final long sequence;
+
+        State(int workerId, long millis, long sequence) {
+            this.workerId = workerId;
+            this.millis = millis;
+            this.sequence = sequence;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        IdProperties.Snowflake snowflake = idProperties.getSnowflake();
+        leaseTtlMillis = snowflake.getLeaseTtl().toMillis();
+        maxBackwardMillis = snowflake.getMaxBackward().toMillis();
+        acquire();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "id-worker-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, leaseTtlMillis / 3);
+        heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long nextId(String keyPrefix) {
+        if (clock.getAsLong() > leaseDeadline) {
+            throw new IllegalStateException("worker id租约已过期, workerId:" + state.get().workerId);
+        }
+        while (true) {
+            State current = state.get();
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            State next;
+            if (now > current.millis) {
+                // 1.进入新的毫秒, 序列号从0开始
+                next = new State(current.workerId, now, 0);
+            } else {
+                // 2.同一毫秒或时钟回拨, 继续使用上一个时间戳
+                if (current.millis - now > maxBackwardMillis) {
+                    throw new IllegalStateException("时钟回拨" + (current.millis - now) + "ms, 超过允许范围");
+                }
+                // 2.1 序列号用完时借用下一毫秒
+                next = current.sequence < SEQUENCE_MASK
+                        ? new State(current.workerId, current.millis, current.sequence + 1)
+                        : new State(current.workerId, current.millis + 1, 0);
+            }
+            if (state.compareAndSet(current, next)) {
+                return compose(next);
+            }
+        }
+    }
+
+    private static long compose(State state) {
+        long second = state.millis / 1000;
+        long millisOfSecond = state.millis % 1000;
+        return second << COUNT_BITS
+                | SNOWFLAKE_FLAG
+                | millisOfSecond << (SEQUENCE_BITS + WORKER_BITS)
+                | (long) state.workerId << SEQUENCE_BITS
+                | state.sequence;
+    }
+
+    // 从随机位置开始依次尝试, 租到第一个空闲的worker id
+    private void acquire() {
+        int start = ThreadLocalRandom.current().nextInt(MAX_WORKERS);
+        for (int i = 0; i < MAX_WORKERS; i++) {
+            int id = (start + i) % MAX_WORKERS;
+            long begin = clock.getAsLong();
+            Long last = stringRedisTemplate.execute(LEASE_SCRIPT, keys(id),
+                    owner, String.valueOf(leaseTtlMillis), String.valueOf(id));
+            if (last == null || last < 0) continue;
+            // 从上一个持有者用到的时间之后开始, 避免时钟不一致时重复; 该毫秒视为已用完, 新worker id的序列号从下一毫秒的0开始
+            state.updateAndGet(current -> new State(id, Math.max(current.millis, last), SEQUENCE_MASK));
+            leaseDeadline = begin + leaseTtlMillis;
+            log.info("租用worker id:{}", id);
+            return;
+        }
+        throw new IllegalStateException("没有空闲的worker id");
+    }
+
+    // 续期并记录已使用到的时间戳; 租约已丢失时立即停止生成并重新申请
+    private void renew() {
+        long begin = clock.getAsLong();
+        State current = state.get();
+        try {
+            Long r = stringRedisTemplate.execute(RENEW_SCRIPT, keys(current.workerId), owner,
+                    String.valueOf(leaseTtlMillis), String.valueOf(current.workerId), String.valueOf(current.millis));
+            if (r != null && r == 1) {
+                leaseDeadline = begin + leaseTtlMillis;
+                return;
+            }
+            // 该worker id可能已被其他节点租用, 租到新的之前不再生成
+            leaseDeadline = 0;
+            log.warn("worker id租约已丢失, 重新申请, workerId:{}", current.workerId);
+            acquire();
+        } catch (Exception e) {
+            // Redis暂时不可用, 租约未过期前继续生成, 下次心跳重试
+            log.error("worker id续期失败, workerId:{}", current.workerId, e);
+        }
+    }
+
+    private static List<String> keys(int workerId) {
+        return Arrays.asList(WORKER_KEY + workerId, WORKER_LAST_KEY);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (heartbeat != null) heartbeat.shutdownNow();
+        State current = state.get();
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, keys(current.workerId),
+                    owner, String.valueOf(current.workerId), String.valueOf(current.millis));
+        } catch (Exception e) {
+            log.warn("释放worker id失败, 等待租约过期, workerId:{}", current.workerId, e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+-- 申请worker id租约
+-- KEYS[1] 租约key, KEYS[2] 各worker id最后使用的时间戳(hash)
+-- ARGV[1] 持有者标识, ARGV[2] 租期(毫秒), ARGV[3] worker id
+-- 返回值: -1 已被占用, 否则返回该worker id上次使用到的时间戳(毫秒), 从未使用过为0
+if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+    local last = redis.call('hget', KEYS[2], ARGV[3])
+    if last then
+        return tonumber(last)
+    end
+    return 0
+end
+return -1
@@ -0,0 +1,9 @@
+-- 释放worker id租约, 记录已使用到的时间戳
+-- KEYS[1] 租约key, KEYS[2] 各worker id最后使用的时间戳(hash)
+-- ARGV[1] 持有者标识, ARGV[2] worker id, ARGV[3] 已使用到的时间戳(毫秒)
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    redis.call('hset', KEYS[2], ARGV[2], ARGV[3])
+    redis.call('del', KEYS[1])
+    return 1
+end
+return 0
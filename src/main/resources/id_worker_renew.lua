@@ -0,0 +1,10 @@
+-- worker id租约续期, 同时记录已使用到的时间戳, 下一个持有者从该时间之后开始生成
+-- KEYS[1] 租约key, KEYS[2] 各worker id最后使用的时间戳(hash)
+-- ARGV[1] 持有者标识, ARGV[2] 租期(毫秒), ARGV[3] worker id, ARGV[4] 已使用到的时间戳(毫秒)
+-- 返回值: 1 续期成功, 0 已不再持有
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    redis.call('hset', KEYS[2], ARGV[3], ARGV[4])
+    return 1
+end
+return 0
@@ -0,0 +1,20 @@
+-- 可重入锁加锁
+-- KEYS[1] 锁key(hash: 持有者 -> 重入次数), KEYS[2] fencing token计数器(可选, 不传时不生成token)
+-- ARGV[1] 持有者标识, ARGV[2] 租期(毫秒), ARGV[3] fencing token计数器的过期时间(毫秒), 每次加1时刷新
+-- 返回值: 新获取锁时返回新的fencing token(>0, 未开启fencing时为1), 重入返回0, 锁被其他持有者占用返回-1
+if redis.call('exists', KEYS[1]) == 0 then
+    redis.call('hset', KEYS[1], ARGV[1], 1)
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    if not KEYS[2] then
+        return 1
+    end
+    local token = redis.call('incr', KEYS[2])
+    redis.call('pexpire', KEYS[2], ARGV[3])
+    return token
+end
+if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then
+    redis.call('hincrby', KEYS[1], ARGV[1], 1)
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 0
+end
+return -1
@@ -0,0 +1,30 @@
+-- 令牌桶限流
+-- KEYS[1] 令牌桶key(hash: tokens 剩余令牌, ts 上次补充时间)
+-- ARGV[1] 每秒生成的令牌数, ARGV[2] 桶容量, ARGV[3] 当前时间(毫秒)
+-- 返回值: 1 放行, 0 限流
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+
+-- 1.按时间差补充令牌
+local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1])
+local ts = tonumber(bucket[2])
+if tokens == nil then
+    tokens = capacity
+    ts = now
+end
+local elapsed = math.max(0, now - ts)
+tokens = math.min(capacity, tokens + elapsed * rate / 1000)
+
+-- 2.取一个令牌
+local allowed = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+    allowed = 1
+end
+
+-- 3.保存, 桶补满所需时间后自动过期
+redis.call('hset', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+redis.call('pexpire', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)
+return allowed
@@ -0,0 +1,48 @@
+-- 秒杀资格判断: 时间窗口 + 库存 + 一人一单, 通过后扣减库存并记录下单用户, 整个脚本原子执行
+-- 所有key带同一个 hash tag {voucherId}, 集群中在同一个slot; 订单消息由调用方在脚本成功后发送
+-- 返回值: 0 成功, 1 库存不足, 2 重复下单, 3 秒杀尚未开始, 4 秒杀已经结束, 5 秒杀信息未加载到Redis, 6 分段库存
+
+-- 1.参数列表
+-- 1.1 库存key
+local stockKey = KEYS[1]
+-- 1.2 时间窗口key
+local timeKey = KEYS[2]
+-- 1.3 已下单用户key
+local orderKey = KEYS[3]
+-- 1.4 用户id
+local userId = ARGV[1]
+-- 1.5 当前时间(毫秒), 由调用方传入, 保证脚本可复制
+local now = tonumber(ARGV[2])
+
+-- 2.判断秒杀时间
+local time = redis.call('hmget', timeKey, 'begin', 'end', 'segments')
+if time[3] and tonumber(time[3]) > 1 then
+    -- 2.1 分段库存, 由调用方走分段扣减
+    return 6
+end
+local stock = redis.call('get', stockKey)
+if (not time[1]) or (not time[2]) or (not stock) then
+    -- 2.2 未加载, 由调用方从数据库加载后重试
+    return 5
+end
+if now < tonumber(time[1]) then
+    return 3
+end
+if now > tonumber(time[2]) then
+    return 4
+end
+
+-- 3.判断库存是否充足
+if tonumber(stock) <= 0 then
+    return 1
+end
+
+-- 4.判断用户是否下单
+if redis.call('sismember', orderKey, userId) == 1 then
+    return 2
+end
+
+-- 5.扣减库存, 记录下单用户
+redis.call('incrby', stockKey, -1)
+redis.call('sadd', orderKey, userId)
+return 0
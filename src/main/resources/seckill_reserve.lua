@@ -0,0 +1,35 @@
+-- 分段库存的下单资格预占: 时间窗口 + 一人一单, 库存由调用方按分段扣减, 扣减失败时调用方归还资格
+-- 两个key带同一个 hash tag {voucherId}, 集群中在同一个slot
+-- 返回值: 0 成功, 2 重复下单, 3 秒杀尚未开始, 4 秒杀已经结束, 5 秒杀信息未加载到Redis, 6 不是分段库存
+
+-- 1.参数列表
+-- 1.1 时间窗口key
+local timeKey = KEYS[1]
+-- 1.2 已下单用户key
+local orderKey = KEYS[2]
+-- 1.3 用户id
+local userId = ARGV[1]
+-- 1.4 当前时间(毫秒)
+local now = tonumber(ARGV[2])
+
+-- 2.判断秒杀时间
+local time = redis.call('hmget', timeKey, 'begin', 'end', 'segments')
+if (not time[1]) or (not time[2]) then
+    return 5
+end
+if (not time[3]) or tonumber(time[3]) <= 1 then
+    -- 2.1 Redis中已不是分段库存, 由调用方重新加载后走单个库存key
+    return 6
+end
+if now < tonumber(time[1]) then
+    return 3
+end
+if now > tonumber(time[2]) then
+    return 4
+end
+
+-- 3.判断并记录下单用户
+if redis.call('sadd', orderKey, userId) == 0 then
+    return 2
+end
+return 0
@@ -0,0 +1,8 @@
+-- 扣减一个库存分段
+-- 返回值: 1 扣减成功, 0 该分段已空
+local stock = tonumber(redis.call('get', KEYS[1]) or '0')
+if stock <= 0 then
+    return 0
+end
+redis.call('incrby', KEYS[1], -1)
+return 1
@@ -0,0 +1,13 @@
+-- 可重入锁释放, 只有持有者才能释放
+-- KEYS[1] 锁key, ARGV[1] 持有者标识, ARGV[2] 租期(毫秒)
+-- 返回值: 1 完全释放, 0 重入次数减一仍持有, -1 不是持有者(锁已过期或被他人持有)
+if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then
+    return -1
+end
+local count = redis.call('hincrby', KEYS[1], ARGV[1], -1)
+if count > 0 then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 0
+end
+redis.call('del', KEYS[1])
+return 1
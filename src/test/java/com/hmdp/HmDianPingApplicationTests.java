@@ -1,21 +1,25 @@
 package com.hmdp;
 
 import com.hmdp.service.impl.ShopServiceImpl;
-import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.IdWorker;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import javax.annotation.Resource;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @SpringBootTest
 class HmDianPingApplicationTests {
     @Resource
     private ShopServiceImpl ShopService;
 
-    @Resource RedisIdWorker redisIdWorker;
+    @Resource IdWorker idWorker;
 
     private final ExecutorService es = Executors.newFixedThreadPool(500);
 
@@ -28,11 +32,13 @@ class HmDianPingApplicationTests {
     void testIdWorker() throws InterruptedException {
         // 创建线程池
         CountDownLatch time = new CountDownLatch(300);
+        // 号段在本地分配, 校验并发生成的id不重复
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
 
         Runnable task = () -> {
             for (int i = 0; i < 1000; i++) {
-                long id = redisIdWorker.nextId("order");
-                System.out.println("id = " + id);
+                long id = idWorker.nextId("order");
+                ids.add(id);
             }
             time.countDown();
         };
@@ -47,6 +53,7 @@ class HmDianPingApplicationTests {
 
         long end = System.currentTimeMillis();
         System.out.println("time = " + (end - begin));
+        assertEquals(300 * 1000, ids.size());
 
         // 关闭线程池
         es.shutdown();
@@ -0,0 +1,264 @@
+package com.hmdp;
+
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Voucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.SeckillStockBuckets;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.seckillKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 秒杀压测与正确性校验
+ * 使用内嵌Redis和H2(MySQL兼容模式), 不依赖外部服务; 大量模拟用户并发调用 seckillVoucher, 每个用户请求多次,
+ * 等待消息队列写库完成后校验: 不超卖、一人一单、数据库与Redis库存一致, 并输出吞吐量和 p50/p99/p999 延迟
+ * 直接调用service, 不经过controller和限流, 测的是Redis资格判断和消息队列写库本身
+ * 默认不运行, 使用 mvn -P benchmark test
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("bench")
+@SpringBootTest
+class SeckillBenchmarkTests {
+
+    private static final int USERS = 5000;
+    private static final int REQUESTS_PER_USER = 2;
+    private static final int STOCK = 1000;
+    private static final int THREADS = 200;
+    private static final long USER_ID_BASE = 1_000_000L;
+    private static final long PERSIST_TIMEOUT_MILLIS = 60_000;
+
+    private static RedisServer redisServer;
+    private static int redisPort;
+
+    @Resource
+    private IVoucherService voucherService;
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private SeckillStockBuckets stockBuckets;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // Spring上下文启动前就要有Redis, 订单消费者初始化时会创建消费者组
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = RedisServer.newRedisServer()
+                .port(redisPort())
+                .setting("save \"\"")
+                .setting("appendonly no")
+                .build();
+        redisServer.start();
+    }
+
+    // 随机空闲端口, 避免与本机Redis或并行构建冲突
+    private static synchronized int redisPort() {
+        if (redisPort == 0) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                redisPort = socket.getLocalPort();
+            } catch (IOException e) {
+                throw new IllegalStateException("无法分配Redis端口", e);
+            }
+        }
+        return redisPort;
+    }
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.port", SeckillBenchmarkTests::redisPort);
+        registry.add("hmdp.redis.port", SeckillBenchmarkTests::redisPort);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redisServer != null) redisServer.stop();
+    }
+
+    @Test
+    void benchmarkSeckill() throws Exception {
+        Long voucherId = createVoucher(0);
+        List<Long> winners = runUsers("单库存", voucherId);
+
+        // 数据库库存 = 初始库存 - 订单数, Redis库存扣减到0
+        SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+        assertEquals(STOCK - winners.size(), seckillVoucher.getStock().intValue());
+        assertEquals("0", stringRedisTemplate.opsForValue().get(seckillKey(SECKILL_STOCK_KEY, voucherId)));
+    }
+
+    @Test
+    void benchmarkSegmentedSeckill() throws Exception {
+        int segments = 8;
+        Long voucherId = createVoucher(segments);
+        List<Long> winners = runUsers("分段库存", voucherId);
+
+        // 各分段剩余库存之和为0, 对账后数据库库存同步为0
+        assertEquals(0, stockBuckets.sum(voucherId, segments));
+        voucherService.reconcileSegmentedStock(voucherId);
+        SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+        assertEquals(STOCK - winners.size(), seckillVoucher.getStock().intValue());
+    }
+
+    // 新增秒杀券, 事务提交后写入Redis和本地注册表
+    private Long createVoucher(int segments) {
+        LocalDateTime now = LocalDateTime.now();
+        Voucher voucher = new Voucher();
+        voucher.setShopId(1L);
+        voucher.setTitle("压测秒杀券");
+        voucher.setPayValue(100L);
+        voucher.setActualValue(1000L);
+        voucher.setType(1);
+        voucher.setStock(STOCK);
+        voucher.setBeginTime(now.minusHours(1));
+        voucher.setEndTime(now.plusHours(1));
+        voucher.setSegments(segments);
+        voucherService.addSeckillVoucher(voucher);
+        return voucher.getId();
+    }
+
+    /**
+     * 所有用户同时开抢, 等待订单写库后校验
+     * @return 抢购成功的用户id
+     */
+    private List<Long> runUsers(String name, Long voucherId) throws Exception {
+        int total = USERS * REQUESTS_PER_USER;
+        long[] latencies = new long[total];
+        AtomicInteger index = new AtomicInteger();
+        Queue<Long> winners = new ConcurrentLinkedQueue<>();
+        Set<Long> orderIds = new HashSet<>();
+        Queue<Long> returnedIds = new ConcurrentLinkedQueue<>();
+
+        // 1.提交所有请求, 同一用户的多次请求相邻提交, 尽量并发执行
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(total);
+        for (int u = 0; u < USERS; u++) {
+            long userId = USER_ID_BASE + u;
+            for (int r = 0; r < REQUESTS_PER_USER; r++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    UserDTO user = new UserDTO();
+                    user.setId(userId);
+                    UserHolder.saveUser(user);
+                    try {
+                        long begin = System.nanoTime();
+                        Result result = voucherOrderService.seckillVoucher(voucherId);
+                        latencies[index.getAndIncrement()] = System.nanoTime() - begin;
+                        if (Boolean.TRUE.equals(result.getSuccess())) {
+                            winners.add(userId);
+                            returnedIds.add((Long) result.getData());
+                        }
+                    } finally {
+                        UserHolder.removeUser();
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        // 2.开抢, 等待所有请求返回
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        report(name, latencies, elapsed, winners.size());
+
+        // 3.Redis阶段校验: 库存全部售出且不超卖, 每个用户最多一单
+        List<Long> winnerList = new ArrayList<>(winners);
+        assertEquals(Math.min(STOCK, USERS), winnerList.size());
+        assertEquals(winnerList.size(), new HashSet<>(winnerList).size());
+        orderIds.addAll(returnedIds);
+        assertEquals(winnerList.size(), orderIds.size());
+
+        // 4.等待消息队列消费完成, 校验数据库中的订单
+        List<VoucherOrder> orders = awaitOrders(voucherId, winnerList.size());
+        assertEquals(winnerList.size(), orders.size());
+        Set<Long> orderUsers = new HashSet<>();
+        Set<Long> persistedIds = new HashSet<>();
+        for (VoucherOrder order : orders) {
+            orderUsers.add(order.getUserId());
+            persistedIds.add(order.getId());
+        }
+        assertEquals(orders.size(), orderUsers.size());
+        assertEquals(new HashSet<>(winnerList), orderUsers);
+        assertEquals(orderIds, persistedIds);
+        // 消费者写库后订单状态为created
+        for (Long orderId : orderIds) {
+            assertEquals("created", stringRedisTemplate.opsForHash().get(SECKILL_ORDER_STATUS_KEY + orderId, "status"));
+        }
+        return winnerList;
+    }
+
+    private List<VoucherOrder> awaitOrders(Long voucherId, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + PERSIST_TIMEOUT_MILLIS;
+        while (true) {
+            List<VoucherOrder> orders = voucherOrderService.query().eq("voucher_id", voucherId).list();
+            if (orders.size() >= expected || System.currentTimeMillis() > deadline) {
+                assertTrue(orders.size() >= expected, "订单写库超时, 已写入:" + orders.size() + ", 预期:" + expected);
+                return orders;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static void report(String name, long[] latencies, long elapsedNanos, int success) {
+        long[] sorted = Arrays.copyOf(latencies, latencies.length);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        log.info("秒杀压测[{}] 用户:{} 请求:{} 成功:{} 耗时:{}ms 吞吐量:{}/s p50:{}ms p99:{}ms p999:{}ms max:{}ms",
+                name, USERS, sorted.length, success, String.format("%.1f", elapsedNanos / 1e6),
+                String.format("%.0f", sorted.length / seconds),
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+                millis(percentile(sorted, 0.999)), millis(sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,136 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.IdProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 雪花算法id的时钟回拨与租约丢失处理, Redis脚本由mock代替, 时钟由测试控制
+ */
+class SnowflakeIdWorkerTests {
+
+    private static final long EPOCH_MILLIS = IdWorker.BEGIN_TIMESTAMP * 1000;
+    private static final long START = EPOCH_MILLIS + 10_000_000L;
+
+    private final AtomicLong now = new AtomicLong(START);
+    // 租约脚本的返回值: 上一个持有者用到的毫秒; 续期脚本的返回值: 1 成功, 0 已丢失
+    private final AtomicLong leaseLast = new AtomicLong();
+    private final AtomicLong renewResult = new AtomicLong(1);
+    // 每次租到的worker id
+    private final List<Integer> leased = new ArrayList<>();
+    private SnowflakeIdWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        RedisScript<?> leaseScript = (RedisScript<?>) ReflectionTestUtils.getField(SnowflakeIdWorker.class, "LEASE_SCRIPT");
+        RedisScript<?> renewScript = (RedisScript<?>) ReflectionTestUtils.getField(SnowflakeIdWorker.class, "RENEW_SCRIPT");
+        StringRedisTemplate template = Mockito.mock(StringRedisTemplate.class);
+        Mockito.when(template.execute(Mockito.<RedisScript<Long>>any(), Mockito.anyList(), Mockito.<Object>any()))
+                .thenAnswer(invocation -> {
+                    Object script = invocation.getArgument(0);
+                    if (script == leaseScript) {
+                        // ARGV[3] 为申请的worker id
+                        leased.add(Integer.valueOf(invocation.getArgument(4).toString()));
+                        return leaseLast.get();
+                    }
+                    if (script == renewScript) return renewResult.get();
+                    return 1L;
+                });
+        worker = new SnowflakeIdWorker();
+        worker.clock = now::get;
+        ReflectionTestUtils.setField(worker, "stringRedisTemplate", template);
+        ReflectionTestUtils.setField(worker, "idProperties", new IdProperties());
+        worker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.destroy();
+    }
+
+    @Test
+    void clockRollbackWithinRangeKeepsIdsIncreasing() {
+        long first = worker.nextId("order");
+        // 回拨1秒, 在默认允许的5秒内, 继续使用上一个时间戳
+        now.addAndGet(-1000);
+        long second = worker.nextId("order");
+        long third = worker.nextId("order");
+        assertTrue(second > first);
+        assertTrue(third > second);
+        assertEquals(millis(first), millis(third));
+    }
+
+    @Test
+    void clockRollbackBeyondRangeIsRejected() {
+        worker.nextId("order");
+        now.addAndGet(-6000);
+        assertThrows(IllegalStateException.class, () -> worker.nextId("order"));
+        // 时钟追上后恢复
+        now.addAndGet(6001);
+        worker.nextId("order");
+    }
+
+    @Test
+    void sequenceExhaustionBorrowsNextMillisecond() {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            ids.add(worker.nextId("order"));
+        }
+        assertEquals(5000, ids.size());
+    }
+
+    @Test
+    void lostLeaseSwitchesWorkerAndResetsSequence() {
+        long before = worker.nextId("order");
+        worker.nextId("order");
+        // 续期时发现租约已被其他节点占用, 重新申请到的worker id已被用到 last 毫秒
+        long last = millis(before) + 50;
+        leaseLast.set(last);
+        renewResult.set(0);
+        ReflectionTestUtils.invokeMethod(worker, "renew");
+
+        long after = worker.nextId("order");
+        assertEquals(leased.get(leased.size() - 1).intValue(), workerId(after));
+        assertEquals(0, sequence(after));
+        assertTrue(millis(after) > last);
+    }
+
+    @Test
+    void expiredLeaseStopsGeneration() {
+        worker.nextId("order");
+        // Redis不可用, 续期失败, 租约在本地过期后拒绝生成
+        ReflectionTestUtils.setField(worker, "stringRedisTemplate", Mockito.mock(StringRedisTemplate.class,
+                invocation -> { throw new IllegalStateException("redis down"); }));
+        ReflectionTestUtils.invokeMethod(worker, "renew");
+        now.addAndGet(new IdProperties().getSnowflake().getLeaseTtl().toMillis() + 1);
+        assertThrows(IllegalStateException.class, () -> worker.nextId("order"));
+    }
+
+    // 解析id中的毫秒(从2025-01-01起)、worker id和序列号
+    private static long millis(long id) {
+        return (id >>> 32) * 1000 + ((id >>> 21) & 0x3FF);
+    }
+
+    private static int workerId(long id) {
+        return (int) ((id >>> 12) & 0x1FF);
+    }
+
+    private static long sequence(long id) {
+        return id & 0xFFF;
+    }
+}
@@ -0,0 +1,59 @@
+-- 秒杀压测用到的表, 字段与 db/hmdp.sql 一致
+CREATE TABLE IF NOT EXISTS tb_shop (
+  id bigint NOT NULL AUTO_INCREMENT,
+  name varchar(128) NOT NULL,
+  type_id bigint NOT NULL,
+  images varchar(1024) NOT NULL,
+  area varchar(128) NULL,
+  address varchar(255) NOT NULL,
+  x double NOT NULL,
+  y double NOT NULL,
+  avg_price bigint NULL,
+  sold int NOT NULL,
+  comments int NOT NULL,
+  score int NOT NULL,
+  open_hours varchar(32) NULL,
+  create_time timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  update_time timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS tb_voucher (
+  id bigint NOT NULL AUTO_INCREMENT,
+  shop_id bigint NULL,
+  title varchar(255) NOT NULL,
+  sub_title varchar(255) NULL,
+  rules varchar(1024) NULL,
+  pay_value bigint NOT NULL,
+  actual_value bigint NOT NULL,
+  type tinyint NOT NULL DEFAULT 0,
+  status tinyint NOT NULL DEFAULT 1,
+  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS tb_seckill_voucher (
+  voucher_id bigint NOT NULL,
+  stock int NOT NULL,
+  segments int NOT NULL DEFAULT 0,
+  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  begin_time timestamp NOT NULL,
+  end_time timestamp NOT NULL,
+  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (voucher_id)
+);
+
+CREATE TABLE IF NOT EXISTS tb_voucher_order (
+  id bigint NOT NULL,
+  user_id bigint NOT NULL,
+  voucher_id bigint NOT NULL,
+  pay_type tinyint NOT NULL DEFAULT 1,
+  status tinyint NOT NULL DEFAULT 1,
+  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  pay_time timestamp NULL,
+  use_time timestamp NULL,
+  refund_time timestamp NULL,
+  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id)
+);